@@ -0,0 +1,83 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.config.ConfigDebug;
+import org.l2jmobius.config.ConfigWindow;
+import org.l2jmobius.xml.CryptVersionParser;
+import org.l2jmobius.xml.DatFixture;
+import org.l2jmobius.xml.Descriptor;
+import org.l2jmobius.xml.DescriptorParser;
+
+/**
+ * Loads the configuration the benchmarks depend on, once per forked JVM.<br>
+ * The benchmark target runs from the dist folder, so paths resolve the same way as in the application.
+ */
+public class BenchmarkEnvironment
+{
+	private static boolean _loaded = false;
+	
+	public static synchronized void load()
+	{
+		if (_loaded)
+		{
+			return;
+		}
+		
+		ConfigWindow.load();
+		ConfigDebug.load();
+		CryptVersionParser.getInstance().parse();
+		DescriptorParser.getInstance().parse();
+		_loaded = true;
+	}
+	
+	/**
+	 * @param chronicle the chronicle name, as listed in the structure files
+	 * @param fileName the .dat file name
+	 * @return the descriptor of the file
+	 */
+	public static Descriptor findDescriptor(String chronicle, String fileName)
+	{
+		final Descriptor desc = DescriptorParser.getInstance().findDescriptorForFile(chronicle, fileName);
+		if (desc == null)
+		{
+			throw new IllegalArgumentException("No descriptor for " + fileName + " in " + chronicle);
+		}
+		return desc;
+	}
+	
+	/**
+	 * Creates a temporary folder holding the L2GameDataName files the fixtures refer to.
+	 * @param encrypter the key used for L2GameDataName.dat
+	 * @return the folder, removed when the JVM exits
+	 */
+	public static File createFixtureDirectory(DatCrypter encrypter) throws Exception
+	{
+		final File dir = Files.createTempDirectory("l2clientdat-benchmark").toFile();
+		dir.deleteOnExit();
+		DatFixture.writeGameDataName(dir, encrypter);
+		for (File file : dir.listFiles())
+		{
+			file.deleteOnExit();
+		}
+		return dir;
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.benchmark;
+
+import org.l2jmobius.actions.ActionTask;
+import org.l2jmobius.listeners.TaskListener;
+
+/**
+ * Task handed to the descriptor reader and writer, which only use it for progress and cancellation.<br>
+ * It is never executed and reports to no one.
+ */
+public class BenchmarkTask extends ActionTask
+{
+	public BenchmarkTask()
+	{
+		super(new TaskListener()
+		{
+		});
+	}
+	
+	@Override
+	protected void action()
+	{
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.l2jmobius.util.ByteReader;
+import org.l2jmobius.util.ByteWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of a single value read by the {@link ByteReader} methods the descriptor reader spends most of its time in.<br>
+ * Compact ints cover every encoded length, strings are short words like the ones found in client files, a quarter of the ASCF ones being UTF-16.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ByteReaderBenchmark
+{
+	private static final int VALUES = 4096;
+	private static final int[] COMPACT_INT_BOUNDS =
+	{
+		0x40,
+		0x2000,
+		0x100000,
+		0x8000000,
+		Integer.MAX_VALUE
+	};
+	
+	ByteBuffer _compactInts;
+	ByteBuffer _utfStrings;
+	ByteBuffer _strings;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		final Random random = new Random(VALUES);
+		final ByteArrayOutputStream compactInts = new ByteArrayOutputStream();
+		final ByteArrayOutputStream utfStrings = new ByteArrayOutputStream();
+		final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		for (int i = 0; i < VALUES; i++)
+		{
+			final int value = random.nextInt(COMPACT_INT_BOUNDS[i % COMPACT_INT_BOUNDS.length]);
+			compactInts.write(ByteWriter.writeCompactInt(random.nextBoolean() ? value : -value));
+			utfStrings.write(ByteWriter.writeUtfString(word(random), false));
+			strings.write(ByteWriter.writeString((i % 4) == 0 ? word(random) + "Ж" : word(random), false));
+		}
+		_compactInts = ByteBuffer.wrap(compactInts.toByteArray());
+		_utfStrings = ByteBuffer.wrap(utfStrings.toByteArray());
+		_strings = ByteBuffer.wrap(strings.toByteArray());
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void readCompactInt(Blackhole blackhole) throws Exception
+	{
+		_compactInts.rewind();
+		for (int i = 0; i < VALUES; i++)
+		{
+			blackhole.consume(ByteReader.readCompactInt(_compactInts));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void readUtfString(Blackhole blackhole) throws Exception
+	{
+		_utfStrings.rewind();
+		for (int i = 0; i < VALUES; i++)
+		{
+			blackhole.consume(ByteReader.readUtfString(_utfStrings, false));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void readString(Blackhole blackhole) throws Exception
+	{
+		_strings.rewind();
+		for (int i = 0; i < VALUES; i++)
+		{
+			blackhole.consume(ByteReader.readString(_strings, false));
+		}
+	}
+	
+	private static String word(Random random)
+	{
+		final int length = 1 + random.nextInt(24);
+		final StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+		{
+			sb.append((char) ('a' + random.nextInt(26)));
+		}
+		return sb.toString();
+	}
+}
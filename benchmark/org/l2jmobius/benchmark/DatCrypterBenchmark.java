@@ -0,0 +1,114 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.benchmark;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.l2jmobius.clientcryptor.DatFile;
+import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.clientcryptor.crypt.DatCrypterSession;
+import org.l2jmobius.xml.CryptVersionParser;
+import org.l2jmobius.xml.DatFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole file encryption and decryption with one key of each implemented crypter type.<br>
+ * The payload is a synthetic Skillgrp.dat. Decryption goes through {@link DatFile} like the application does, encryption stays in memory.<br>
+ * Only the xor and RSA keys are listed: the DES crypter can not encrypt and the Blowfish one returns no data, so neither can produce a fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatCrypterBenchmark
+{
+	@Param(
+	{
+		"v120_original",
+		"v413_encdec"
+	})
+	String _key;
+	
+	@Param(
+	{
+		"Superion - Guardians"
+	})
+	String _chronicle;
+	
+	@Param(
+	{
+		"1000"
+	})
+	int _records;
+	
+	DatCrypter _encrypter;
+	DatCrypter _decrypter;
+	byte[] _payload;
+	String _encryptedFile;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		BenchmarkEnvironment.load();
+		_encrypter = CryptVersionParser.getInstance().getEncryptKey(_key);
+		_decrypter = CryptVersionParser.getInstance().getDecryptKey(_key);
+		_payload = DatFixture.generate(BenchmarkEnvironment.findDescriptor(_chronicle, "Skillgrp.dat"), _records, _records);
+		
+		final File file = File.createTempFile("Skillgrp", ".dat");
+		file.deleteOnExit();
+		_encryptedFile = file.getPath();
+		DatFile.encrypt(_payload, _encryptedFile, _encrypter);
+		
+		// Crypters without a skip size also decrypt the end bytes, only the payload part is compared.
+		final ByteBuffer decrypted = decrypt();
+		if ((decrypted == null) || (decrypted.remaining() < _payload.length) || !decrypted.slice(decrypted.position(), _payload.length).equals(ByteBuffer.wrap(_payload)))
+		{
+			throw new IllegalStateException("Round trip failed for " + _key);
+		}
+	}
+	
+	@Benchmark
+	public ByteBuffer decrypt() throws Exception
+	{
+		final DatFile dat = new DatFile(_encryptedFile);
+		dat.decrypt(_decrypter);
+		return dat.getBuff();
+	}
+	
+	@Benchmark
+	public ByteBuffer encrypt() throws Exception
+	{
+		final DatCrypterSession session = _encrypter.newSession();
+		session.update(_payload);
+		return session.encryptResult();
+	}
+}
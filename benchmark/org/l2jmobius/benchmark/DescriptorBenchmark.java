@@ -0,0 +1,124 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.benchmark;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.data.GameDataName;
+import org.l2jmobius.xml.CryptVersionParser;
+import org.l2jmobius.xml.DatFixture;
+import org.l2jmobius.xml.Descriptor;
+import org.l2jmobius.xml.DescriptorReader;
+import org.l2jmobius.xml.DescriptorWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of a decrypted synthetic .dat file to text and back, as done by mass unpack and mass pack.<br>
+ * Both directions run in mass mode, the L2GameDataName table is loaded during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptorBenchmark
+{
+	@Param(
+	{
+		"Superion - Guardians"
+	})
+	String _chronicle;
+	
+	@Param(
+	{
+		"Skillgrp.dat",
+		"ItemName-e.dat",
+		"NpcName-e.dat"
+	})
+	String _fileName;
+	
+	@Param(
+	{
+		"1000"
+	})
+	int _records;
+	
+	@Param(
+	{
+		"v413_encdec"
+	})
+	String _key;
+	
+	BenchmarkTask _task;
+	DatCrypter _encrypter;
+	DatCrypter _decrypter;
+	Descriptor _desc;
+	File _file;
+	byte[] _data;
+	String _text;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		BenchmarkEnvironment.load();
+		_task = new BenchmarkTask();
+		_encrypter = CryptVersionParser.getInstance().getEncryptKey(_key);
+		_decrypter = CryptVersionParser.getInstance().getDecryptKey(_key);
+		_desc = BenchmarkEnvironment.findDescriptor(_chronicle, _fileName);
+		_file = new File(BenchmarkEnvironment.createFixtureDirectory(_encrypter), _fileName);
+		_data = DatFixture.generate(_desc, _fileName.hashCode(), _records);
+		
+		GameDataName.getInstance().clear();
+		_text = read();
+		if (_text == null)
+		{
+			throw new IllegalStateException("The fixture of " + _fileName + " could not be read.");
+		}
+		
+		if (write() == null)
+		{
+			throw new IllegalStateException("The text of " + _fileName + " could not be packed.");
+		}
+	}
+	
+	@Benchmark
+	public String read() throws Exception
+	{
+		return DescriptorReader.getInstance().parseData(_task, 100.0, _file, _decrypter, _desc, ByteBuffer.wrap(_data), true);
+	}
+	
+	@Benchmark
+	public byte[] write() throws Exception
+	{
+		return DescriptorWriter.parseData(_task, 100.0, _file, _encrypter, _desc, _text, true);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.clientcryptor.crypt.DatCrypterSession;
+import org.l2jmobius.xml.CryptVersionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single 128 bytes RSA block in the decrypt path.<br>
+ * Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is reported per block. The inflated output, about 124 bytes per block with the incompressible payload used here, is allocated by the session once per file and shows up in that figure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RSADatCrypterBenchmark
+{
+	private static final int BLOCKS = 1024;
+	
+	@Param(
+	{
+		"v413_encdec"
+	})
+	String _key;
+	
+	DatCrypter _decrypter;
+	byte[][] _blocks;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		BenchmarkEnvironment.load();
+		final DatCrypter encrypter = CryptVersionParser.getInstance().getEncryptKey(_key);
+		_decrypter = CryptVersionParser.getInstance().getDecryptKey(_key);
+		
+		// Random bytes do not compress, so the payload spans about BLOCKS encrypted blocks.
+		final byte[] payload = new byte[(BLOCKS * 124) - 64];
+		new Random(_key.hashCode()).nextBytes(payload);
+		final DatCrypterSession session = encrypter.newSession();
+		session.update(payload);
+		final ByteBuffer encrypted = session.encryptResult();
+		
+		_blocks = new byte[encrypted.remaining() / 128][128];
+		for (byte[] block : _blocks)
+		{
+			encrypted.get(block);
+		}
+		
+		if (_blocks.length != BLOCKS)
+		{
+			throw new IllegalStateException("Expected " + BLOCKS + " blocks, got " + _blocks.length);
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BLOCKS)
+	public ByteBuffer decryptBlocks() throws Exception
+	{
+		final DatCrypterSession session = _decrypter.newSession();
+		for (byte[] block : _blocks)
+		{
+			session.update(block);
+		}
+		return session.decryptResult();
+	}
+}
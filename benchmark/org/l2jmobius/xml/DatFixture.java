@@ -0,0 +1,307 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.l2jmobius.clientcryptor.DatFile;
+import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.config.ConfigDebug;
+import org.l2jmobius.util.ByteWriter;
+
+/**
+ * Generates synthetic .dat contents that follow the nodes of a {@link Descriptor}.<br>
+ * Lives in the descriptor package so it can walk the node tree the same way the reader does. Values are random but reproducible for a given seed, and every if/else branch and enum index declared by the structure is exercised.
+ */
+public class DatFixture
+{
+	public static final int NAME_COUNT = 1000;
+	
+	private static final int NESTED_CYCLE_SIZE = 3;
+	private static final byte[] SAFE_PACKAGE_BYTES =
+	{
+		12,
+		83,
+		97,
+		102,
+		101,
+		80,
+		97,
+		99,
+		107,
+		97,
+		103,
+		101,
+		0
+	};
+	
+	private final Random _random;
+	private final Map<String, Set<String>> _conditions = new HashMap<>();
+	private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+	
+	private DatFixture(long seed)
+	{
+		_random = new Random(seed);
+	}
+	
+	/**
+	 * @param desc the structure to follow
+	 * @param seed the random seed
+	 * @param records the size of the top level cycles
+	 * @return the decrypted body of a .dat file
+	 */
+	public static byte[] generate(Descriptor desc, long seed, int records) throws IOException
+	{
+		final DatFixture fixture = new DatFixture(seed);
+		if (desc.isRawData())
+		{
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < records; i++)
+			{
+				sb.append(fixture.word()).append(" = ").append(fixture.word()).append("\r\n");
+			}
+			fixture._out.write(ByteWriter.writeUtfString(sb.toString(), true));
+		}
+		else
+		{
+			fixture.collectConditions(desc.getNodes());
+			fixture.generate(desc.getNodes(), 1, new HashMap<>(), records);
+		}
+		
+		if (desc.isSafePackage())
+		{
+			fixture._out.write(SAFE_PACKAGE_BYTES);
+		}
+		return fixture._out.toByteArray();
+	}
+	
+	/**
+	 * Writes the L2GameDataName.dat and L2GameDataName.txt files that MAP_INT values of the fixtures refer to.
+	 * @param dir the folder of the fixtures
+	 * @param encrypter the key used for the .dat file
+	 */
+	public static void writeGameDataName(File dir, DatCrypter encrypter) throws Exception
+	{
+		final DatFixture fixture = new DatFixture(NAME_COUNT);
+		final ByteArrayOutputStream dat = new ByteArrayOutputStream();
+		final StringBuilder txt = new StringBuilder();
+		dat.write(ByteWriter.writeInt(NAME_COUNT));
+		for (int i = 0; i < NAME_COUNT; i++)
+		{
+			final String name = "name_" + i + "_" + fixture.word();
+			dat.write(ByteWriter.writeUtfString(name, false));
+			txt.append("name_begin\tname=[").append(name).append("]\tname_end\r\n");
+		}
+		dat.write(SAFE_PACKAGE_BYTES);
+		
+		DatFile.encrypt(dat.toByteArray(), new File(dir, "L2GameDataName.dat").getPath(), encrypter);
+		Files.writeString(new File(dir, "L2GameDataName.txt").toPath(), txt, StandardCharsets.UTF_8);
+	}
+	
+	private void collectConditions(List<ParamNode> nodes)
+	{
+		if (nodes == null)
+		{
+			return;
+		}
+		
+		for (ParamNode node : nodes)
+		{
+			if (node.getEntityType().isIf() || node.getEntityType().isElse())
+			{
+				_conditions.computeIfAbsent(node.getParamIf(), k -> new HashSet<>()).add(node.getValIf());
+			}
+			collectConditions(node.getSubNodes());
+		}
+	}
+	
+	private void generate(List<ParamNode> nodes, int cycleSize, Map<String, String> vars, int records) throws IOException
+	{
+		for (int i = 0; i < cycleSize; i++)
+		{
+			for (ParamNode node : nodes)
+			{
+				final ParamNodeType type = node.getEntityType();
+				if (type.isIf() || type.isElse())
+				{
+					final String value = vars.get(node.getParamIf());
+					if ((value != null) && (value.equalsIgnoreCase(node.getValIf()) == type.isIf()))
+					{
+						generate(node.getSubNodes(), 1, vars, NESTED_CYCLE_SIZE);
+					}
+				}
+				else if (type.isMask())
+				{
+					final String value = vars.get(node.getParamMask());
+					if ((value != null) && ((Integer.parseInt(value) & node.getValMask()) == node.getValMask()))
+					{
+						generate(node.getSubNodes(), 1, vars, NESTED_CYCLE_SIZE);
+					}
+				}
+				else if (type.isWrapper())
+				{
+					generate(node.getSubNodes(), 1, vars, NESTED_CYCLE_SIZE);
+				}
+				else if (type.isCycle())
+				{
+					final int size = (node.getSize() >= 0) ? node.getSize() : Integer.parseInt(vars.get(node.getCycleName()));
+					generate(node.getSubNodes(), size, vars, NESTED_CYCLE_SIZE);
+				}
+				else if (type.isVariable())
+				{
+					vars.put(node.getName(), writeValue(node, records));
+				}
+			}
+		}
+	}
+	
+	private String writeValue(ParamNode node, int records) throws IOException
+	{
+		long value = node.isIterator() ? records : _random.nextInt(200);
+		if (!node.isIterator())
+		{
+			final Set<String> conditions = _conditions.get(node.getName());
+			if ((conditions != null) && _random.nextBoolean())
+			{
+				final List<String> list = new ArrayList<>(conditions);
+				try
+				{
+					value = Long.parseLong(list.get(_random.nextInt(list.size())));
+				}
+				catch (NumberFormatException e)
+				{
+					// Enum names are compared by name, keep the random value.
+				}
+			}
+			else if (node.isEnum() && ConfigDebug.DAT_REPLACEMENT_ENUMS)
+			{
+				final List<Integer> indexes = new ArrayList<>(DescriptorParser.getInstance().getEnumIndexes(node.getEnumName()));
+				if (!indexes.isEmpty())
+				{
+					value = indexes.get(_random.nextInt(indexes.size()));
+				}
+			}
+		}
+		
+		switch (node.getType())
+		{
+			case UCHAR:
+			case UBYTE:
+			case HEX:
+			{
+				_out.write((byte) value);
+				return String.valueOf(value & 0xFF);
+			}
+			case SHORT:
+			case USHORT:
+			{
+				_out.write(ByteWriter.writeShort((int) value));
+				return String.valueOf(value & 0xFFFF);
+			}
+			case INT:
+			case UINT:
+			{
+				_out.write(ByteWriter.writeInt((int) value));
+				return String.valueOf(value);
+			}
+			case CNTR:
+			{
+				_out.write(ByteWriter.writeCompactInt((int) value));
+				return String.valueOf(value);
+			}
+			case LONG:
+			{
+				_out.write(ByteWriter.writeLong(value * 1234567891L));
+				return String.valueOf(value);
+			}
+			case FLOAT:
+			{
+				_out.write(ByteWriter.writeFloat(_random.nextFloat() * 100));
+				return String.valueOf(value);
+			}
+			case DOUBLE:
+			{
+				_out.write(ByteWriter.writeDouble(_random.nextDouble() * 1000));
+				return String.valueOf(value);
+			}
+			case UNICODE:
+			{
+				_out.write(ByteWriter.writeUtfString(sentence(), true));
+				return String.valueOf(value);
+			}
+			case ASCF:
+			{
+				_out.write(ByteWriter.writeString(sentence(), true));
+				return String.valueOf(value);
+			}
+			case RGB:
+			case RGBA:
+			{
+				final byte[] color = new byte[node.getType() == ParamType.RGB ? 3 : 4];
+				_random.nextBytes(color);
+				_out.write(color);
+				return String.valueOf(value);
+			}
+			case MAP_INT:
+			{
+				_out.write(ByteWriter.writeInt(_random.nextInt(NAME_COUNT)));
+				return String.valueOf(value);
+			}
+			default:
+			{
+				throw new IllegalStateException("Unsupported type " + node.getType() + " for node " + node.getName());
+			}
+		}
+	}
+	
+	private String sentence()
+	{
+		final int words = _random.nextInt(6);
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < words; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(' ');
+			}
+			sb.append(word());
+		}
+		return sb.toString();
+	}
+	
+	private String word()
+	{
+		final int length = 1 + _random.nextInt(10);
+		final StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+		{
+			sb.append((char) ('a' + _random.nextInt(26)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,4 @@
+@echo off
+@title L2ClientDat Command Line - L2jMobius Edition
+@path="C:\Progra~1\BellSoft\LibericaJDK-21\bin\"
+@java -Djava.awt.headless=true -Dfile.encoding=UTF-8 -Djava.util.logging.manager=org.l2jmobius.log.AppLogManager -Xms1g -Xmx2g -cp .\libs\L2ClientDat.jar org.l2jmobius.L2ClientDatCli %*
\ No newline at end of file
@@ -14,119 +14,104 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
-import org.l2jmobius.actions.ActionTask;
-import org.l2jmobius.listeners.FormatListener;
-import org.l2jmobius.util.Util;
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatListener;
+import org.l2jmobius.listeners.RecordFormatter;
 
-public class ItemNameFormat implements FormatListener
+public class ItemNameFormat implements RecordFormatListener
 {
-	private static final Pattern PATTERN = Pattern.compile("\\bitem_autouse_begin\\b(.*?)\\bitem_autouse_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_2 = Pattern.compile("\\bitem_name_begin\\b(.*?)\\bitem_name_end\\b", Pattern.DOTALL);
+	@Override
+	public RecordFormatter newDecoder()
+	{
+		return new Decoder();
+	}
 	
 	@Override
-	public String decode(ActionTask actionTask, double progressWeight, String str)
+	public RecordFormatter newEncoder()
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		return new Encoder();
+	}
+	
+	/**
+	 * Merges the auto use type of item_autouse records into the item_name records.<br>
+	 * Item records are held until the end, as the auto use records come after them.
+	 */
+	private static class Decoder implements RecordFormatter
+	{
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
+		private final List<FormatRecord> _items = new ArrayList<>();
 		
-		final Matcher m = PATTERN.matcher(str);
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		while (m.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m.group(1));
-			final int itemId = Integer.parseInt(params.get("item_id"));
-			final int autouseType = Integer.parseInt(params.get("autouse_type"));
-			autoUses.put(itemId, autouseType);
-			
-			if (actionTask.isCancelled())
+			switch (record.getName())
 			{
-				return null;
+				case "item_autouse":
+				{
+					_autoUses.put(Integer.parseInt(record.get("item_id")), Integer.parseInt(record.get("autouse_type")));
+					break;
+				}
+				case "item_name":
+				{
+					_items.add(record);
+					break;
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
 		
-		final StringBuilder builder = new StringBuilder();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int id = Integer.parseInt(params.get("id"));
-			params.put("autouse_type", String.valueOf(autoUses.getOrDefault(id, 0)));
-			builder.append("item_name_begin\t").append(Util.mapToString(params)).append("item_name_end").append("\r\n");
-			
-			if (actionTask.isCancelled())
+			for (FormatRecord item : _items)
 			{
-				return null;
+				final int id = Integer.parseInt(item.get("id"));
+				out.accept(item.put("autouse_type", String.valueOf(_autoUses.getOrDefault(id, 0))));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		
-		return builder.toString();
 	}
 	
-	@Override
-	public String encode(ActionTask actionTask, double progressWeight, String str)
+	/**
+	 * Moves the auto use type of item_name records into item_autouse records, written after the items.
+	 */
+	private static class Encoder implements RecordFormatter
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
 		
-		final StringBuilder builder = new StringBuilder();
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int id = Integer.parseInt(params.get("id"));
-			final String autoUse = params.remove("autouse_type");
+			if (!record.getName().equals("item_name"))
+			{
+				return;
+			}
+			
+			final int id = Integer.parseInt(record.get("id"));
+			final String autoUse = record.remove("autouse_type");
 			if (autoUse != null)
 			{
 				final int autoUseType = Integer.parseInt(autoUse);
 				if (autoUseType != 0)
 				{
-					autoUses.put(id, autoUseType);
+					_autoUses.put(id, autoUseType);
 				}
 			}
-			builder.append("item_name_begin\t").append(Util.mapToString(params)).append("item_name_end\r\n");
-			
-			if (actionTask.isCancelled())
-			{
-				return null;
-			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
+			out.accept(record);
 		}
 		
-		for (Entry<Integer, Integer> entry : autoUses.entrySet())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			builder.append("item_autouse_begin\titem_id=").append(entry.getKey()).append("\tautouse_type=").append(entry.getValue()).append("\titem_autouse_end\r\n");
-			
-			if (actionTask.isCancelled())
+			for (Entry<Integer, Integer> entry : _autoUses.entrySet())
 			{
-				return null;
+				out.accept(new FormatRecord("item_autouse").put("item_id", String.valueOf(entry.getKey())).put("autouse_type", String.valueOf(entry.getValue())));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		return builder.toString();
 	}
 }
@@ -14,22 +14,19 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
-import org.l2jmobius.actions.ActionTask;
-import org.l2jmobius.listeners.FormatListener;
-import org.l2jmobius.util.Util;
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatListener;
+import org.l2jmobius.listeners.RecordFormatter;
 
-public class ItemNameFormat245 implements FormatListener
+public class ItemNameFormat245 implements RecordFormatListener
 {
-	private static final Pattern PATTERN = Pattern.compile("\\bitem_autouse_begin\\b(.*?)\\bitem_autouse_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_2 = Pattern.compile("\\bitem_name_begin\\b(.*?)\\bitem_name_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_3 = Pattern.compile("\\bitem_enchant_begin\\b(.*?)\\bitem_enchant_end\\b", Pattern.DOTALL);
-	
 	private static class ItemEnchant
 	{
 		final int keepTypeSelection;
@@ -43,150 +40,121 @@ public class ItemNameFormat245 implements FormatListener
 	}
 	
 	@Override
-	public String decode(ActionTask actionTask, double progressWeight, String str)
+	public RecordFormatter newDecoder()
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
-		
-		final Matcher m = PATTERN.matcher(str);
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		while (m.find())
-		{
-			final Map<String, String> params = Util.stringToMap(m.group(1));
-			final int itemId = Integer.parseInt(params.get("item_id"));
-			final int autouseType = Integer.parseInt(params.get("autouse_type"));
-			autoUses.put(itemId, autouseType);
-			
-			if (actionTask.isCancelled())
-			{
-				return null;
-			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
-		}
+		return new Decoder();
+	}
+	
+	@Override
+	public RecordFormatter newEncoder()
+	{
+		return new Encoder();
+	}
+	
+	/**
+	 * Merges the item_autouse and item_enchant records into the item_name records.<br>
+	 * Item records are held until the end, as the other records come after them.
+	 */
+	private static class Decoder implements RecordFormatter
+	{
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
+		private final Map<Integer, ItemEnchant> _enchants = new HashMap<>();
+		private final List<FormatRecord> _items = new ArrayList<>();
 		
-		final Matcher m3 = PATTERN_3.matcher(str);
-		final Map<Integer, ItemEnchant> unks = new HashMap<>();
-		while (m3.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m3.group(1));
-			final int itemId = Integer.parseInt(params.get("item_ex_id"));
-			final int keepTypeSelection = Integer.parseInt(params.get("keep_type_selection"));
-			final String keepTypeEnchant = params.get("keep_type_enchant");
-			unks.put(itemId, new ItemEnchant(keepTypeSelection, keepTypeEnchant));
-			
-			if (actionTask.isCancelled())
+			switch (record.getName())
 			{
-				return null;
+				case "item_autouse":
+				{
+					_autoUses.put(Integer.parseInt(record.get("item_id")), Integer.parseInt(record.get("autouse_type")));
+					break;
+				}
+				case "item_enchant":
+				{
+					final int itemId = Integer.parseInt(record.get("item_ex_id"));
+					final int keepTypeSelection = Integer.parseInt(record.get("keep_type_selection"));
+					_enchants.put(itemId, new ItemEnchant(keepTypeSelection, record.get("keep_type_enchant")));
+					break;
+				}
+				case "item_name":
+				{
+					_items.add(record);
+					break;
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
 		
-		final StringBuilder builder = new StringBuilder();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int id = Integer.parseInt(params.get("id"));
-			params.put("autouse_type", String.valueOf(autoUses.getOrDefault(id, 0)));
-			final ItemEnchant itemEnchant = unks.getOrDefault(id, new ItemEnchant(-1, ""));
-			params.put("keep_type_selection", String.valueOf(itemEnchant.keepTypeSelection));
-			params.put("keep_type_enchant", itemEnchant.keepTypeEnchant);
-			builder.append("item_name_begin\t").append(Util.mapToString(params)).append("item_name_end").append("\r\n");
-			
-			if (actionTask.isCancelled())
+			for (FormatRecord item : _items)
 			{
-				return null;
+				final int id = Integer.parseInt(item.get("id"));
+				item.put("autouse_type", String.valueOf(_autoUses.getOrDefault(id, 0)));
+				final ItemEnchant itemEnchant = _enchants.getOrDefault(id, new ItemEnchant(-1, ""));
+				item.put("keep_type_selection", String.valueOf(itemEnchant.keepTypeSelection));
+				item.put("keep_type_enchant", itemEnchant.keepTypeEnchant);
+				out.accept(item);
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		
-		return builder.toString();
 	}
 	
-	@Override
-	public String encode(ActionTask actionTask, double progressWeight, String str)
+	/**
+	 * Moves the auto use type and enchant keep type of item_name records into item_autouse and item_enchant records, written after the items.
+	 */
+	private static class Encoder implements RecordFormatter
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
+		private final Map<Integer, ItemEnchant> _enchants = new HashMap<>();
 		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
-		
-		final StringBuilder builder = new StringBuilder();
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		final Map<Integer, ItemEnchant> unks = new HashMap<>();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int id = Integer.parseInt(params.get("id"));
-			final String autoUse = params.remove("autouse_type");
+			if (!record.getName().equals("item_name"))
+			{
+				return;
+			}
+			
+			final int id = Integer.parseInt(record.get("id"));
+			final String autoUse = record.remove("autouse_type");
 			if (autoUse != null)
 			{
-				int autoUseType = Integer.parseInt(autoUse);
+				final int autoUseType = Integer.parseInt(autoUse);
 				if (autoUseType != 0)
 				{
-					autoUses.put(id, autoUseType);
+					_autoUses.put(id, autoUseType);
 				}
 			}
 			
 			int keepTypeSelectionInt = 0;
-			final String keepTypeSelection = params.remove("keep_type_selection");
+			final String keepTypeSelection = record.remove("keep_type_selection");
 			if (keepTypeSelection != null)
 			{
 				keepTypeSelectionInt = Integer.parseInt(keepTypeSelection);
 			}
 			
-			final String keepTypeEnchant = params.remove("keep_type_enchant");
+			final String keepTypeEnchant = record.remove("keep_type_enchant");
 			if ((keepTypeSelectionInt >= 0) && !((keepTypeEnchant == null) || keepTypeEnchant.isEmpty()))
 			{
-				unks.put(id, new ItemEnchant(keepTypeSelectionInt, keepTypeEnchant));
-			}
-			builder.append("item_name_begin\t").append(Util.mapToString(params)).append("item_name_end\r\n");
-			
-			if (actionTask.isCancelled())
-			{
-				return null;
+				_enchants.put(id, new ItemEnchant(keepTypeSelectionInt, keepTypeEnchant));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
+			out.accept(record);
 		}
 		
-		for (Entry<Integer, Integer> entry : autoUses.entrySet())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			builder.append("item_autouse_begin\titem_id=").append(entry.getKey()).append("\tautouse_type=").append(entry.getValue()).append("\titem_autouse_end\r\n");
-			
-			if (actionTask.isCancelled())
+			for (Entry<Integer, Integer> entry : _autoUses.entrySet())
 			{
-				return null;
+				out.accept(new FormatRecord("item_autouse").put("item_id", String.valueOf(entry.getKey())).put("autouse_type", String.valueOf(entry.getValue())));
 			}
 			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
-		}
-		
-		for (Entry<Integer, ItemEnchant> entry : unks.entrySet())
-		{
-			builder.append("item_enchant_begin\titem_ex_id=").append(entry.getKey()).append("\tkeep_type_selection=").append(entry.getValue().keepTypeSelection).append("\tkeep_type_enchant=").append(entry.getValue().keepTypeEnchant).append("\titem_enchant_end\r\n");
-			
-			if (actionTask.isCancelled())
+			for (Entry<Integer, ItemEnchant> entry : _enchants.entrySet())
 			{
-				return null;
+				out.accept(new FormatRecord("item_enchant").put("item_ex_id", String.valueOf(entry.getKey())).put("keep_type_selection", String.valueOf(entry.getValue().keepTypeSelection)).put("keep_type_enchant", entry.getValue().keepTypeEnchant));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		return builder.toString();
 	}
 }
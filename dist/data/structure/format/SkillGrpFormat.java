@@ -14,119 +14,104 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
-import org.l2jmobius.actions.ActionTask;
-import org.l2jmobius.listeners.FormatListener;
-import org.l2jmobius.util.Util;
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatListener;
+import org.l2jmobius.listeners.RecordFormatter;
 
-public class SkillGrpFormat implements FormatListener
+public class SkillGrpFormat implements RecordFormatListener
 {
-	private static final Pattern PATTERN = Pattern.compile("\\bskill_autouse_begin\\b(.*?)\\bskill_autouse_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_2 = Pattern.compile("\\bskill_begin\\b(.*?)\\bskill_end\\b", Pattern.DOTALL);
+	@Override
+	public RecordFormatter newDecoder()
+	{
+		return new Decoder();
+	}
 	
 	@Override
-	public String decode(ActionTask actionTask, double progressWeight, String str)
+	public RecordFormatter newEncoder()
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		return new Encoder();
+	}
+	
+	/**
+	 * Merges the auto use of skill_autouse records into the skill records.<br>
+	 * Skill records are held until the end, as the auto use records come after them.
+	 */
+	private static class Decoder implements RecordFormatter
+	{
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
+		private final List<FormatRecord> _skills = new ArrayList<>();
 		
-		final Matcher m = PATTERN.matcher(str);
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		while (m.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m.group(1));
-			final int skillId = Integer.parseInt(params.get("skill_id"));
-			final int autoUse = Integer.parseInt(params.get("auto_use"));
-			autoUses.put(skillId, autoUse);
-			
-			if (actionTask.isCancelled())
+			switch (record.getName())
 			{
-				return null;
+				case "skill_autouse":
+				{
+					_autoUses.put(Integer.parseInt(record.get("skill_id")), Integer.parseInt(record.get("auto_use")));
+					break;
+				}
+				case "skill":
+				{
+					_skills.add(record);
+					break;
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
 		
-		final StringBuilder builder = new StringBuilder();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int skillId = Integer.parseInt(params.get("id"));
-			params.put("auto_use", String.valueOf(autoUses.getOrDefault(skillId, 0)));
-			builder.append("skill_begin\t").append(Util.mapToString(params)).append("skill_end").append("\r\n");
-			
-			if (actionTask.isCancelled())
+			for (FormatRecord skill : _skills)
 			{
-				return null;
+				final int skillId = Integer.parseInt(skill.get("id"));
+				out.accept(skill.put("auto_use", String.valueOf(_autoUses.getOrDefault(skillId, 0))));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		
-		return builder.toString();
 	}
 	
-	@Override
-	public String encode(ActionTask actionTask, double progressWeight, String str)
+	/**
+	 * Moves the auto use of skill records into skill_autouse records, written after the skills.
+	 */
+	private static class Encoder implements RecordFormatter
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
 		
-		final StringBuilder builder = new StringBuilder();
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int id = Integer.parseInt(params.get("id"));
-			final String autoUse = params.remove("auto_use");
+			if (!record.getName().equals("skill"))
+			{
+				return;
+			}
+			
+			final int id = Integer.parseInt(record.get("id"));
+			final String autoUse = record.remove("auto_use");
 			if (autoUse != null)
 			{
 				final int autoUseType = Integer.parseInt(autoUse);
 				if (autoUseType != 0)
 				{
-					autoUses.put(id, autoUseType);
+					_autoUses.put(id, autoUseType);
 				}
 			}
-			builder.append("skill_begin\t").append(Util.mapToString(params)).append("skill_end\r\n");
-			
-			if (actionTask.isCancelled())
-			{
-				return null;
-			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
+			out.accept(record);
 		}
 		
-		for (Entry<Integer, Integer> entry : autoUses.entrySet())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			builder.append("skill_autouse_begin\tskill_id=").append(entry.getKey()).append("\tauto_use=").append(entry.getValue()).append("\tskill_autouse_end\r\n");
-			
-			if (actionTask.isCancelled())
+			for (Entry<Integer, Integer> entry : _autoUses.entrySet())
 			{
-				return null;
+				out.accept(new FormatRecord("skill_autouse").put("skill_id", String.valueOf(entry.getKey())).put("auto_use", String.valueOf(entry.getValue())));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		return builder.toString();
 	}
 }
@@ -14,24 +14,21 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
-import org.l2jmobius.actions.ActionTask;
-import org.l2jmobius.listeners.FormatListener;
-import org.l2jmobius.util.Util;
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatListener;
+import org.l2jmobius.listeners.RecordFormatter;
 
-public class SkillGrpFormat245 implements FormatListener
+public class SkillGrpFormat245 implements RecordFormatListener
 {
-	private static final Pattern PATTERN = Pattern.compile("\\bskill_autouse_begin\\b(.*?)\\bskill_autouse_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_2 = Pattern.compile("\\bskill_begin\\b(.*?)\\bskill_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_3 = Pattern.compile("\\bicon_panel_2_begin\\b(.*?)\\bicon_panel_2_end\\b", Pattern.DOTALL);
-	
 	private static int getSkillLevelMask(int skillLevel, int subSkillLevel)
 	{
 		return skillLevel | (subSkillLevel << 16);
@@ -50,159 +47,122 @@ public class SkillGrpFormat245 implements FormatListener
 	}
 	
 	@Override
-	public String decode(ActionTask actionTask, double progressWeight, String str)
+	public RecordFormatter newDecoder()
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		return new Decoder();
+	}
+	
+	@Override
+	public RecordFormatter newEncoder()
+	{
+		return new Encoder();
+	}
+	
+	/**
+	 * Merges the skill_autouse and icon_panel_2 records into the skill records.<br>
+	 * Skill records are held until the end, as the other records come after them.
+	 */
+	private static class Decoder implements RecordFormatter
+	{
+		private final Map<Integer, Integer> _autoUses = new HashMap<>();
+		private final Map<Integer, Map<Integer, String>> _iconPanels2 = new HashMap<>();
+		private final List<FormatRecord> _skills = new ArrayList<>();
 		
-		final Matcher m = PATTERN.matcher(str);
-		final Map<Integer, Integer> autoUses = new HashMap<>();
-		while (m.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m.group(1));
-			final int skillId = Integer.parseInt(params.get("skill_id"));
-			final int autoUseType = Integer.parseInt(params.get("auto_use_type"));
-			autoUses.put(skillId, autoUseType);
-			
-			if (actionTask.isCancelled())
+			switch (record.getName())
 			{
-				return null;
+				case "skill_autouse":
+				{
+					_autoUses.put(Integer.parseInt(record.get("skill_id")), Integer.parseInt(record.get("auto_use_type")));
+					break;
+				}
+				case "icon_panel_2":
+				{
+					final int skillId = Integer.parseInt(record.get("skill_id2"));
+					final int skillLvl = Integer.parseInt(record.get("skill_level2"));
+					final int skillSubLvl = Integer.parseInt(record.get("skill_sublevel2"));
+					_iconPanels2.computeIfAbsent(skillId, k -> new HashMap<>()).put(getSkillLevelMask(skillLvl, skillSubLvl), record.get("icon_panel2"));
+					break;
+				}
+				case "skill":
+				{
+					_skills.add(record);
+					break;
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
 		
-		final Matcher m3 = PATTERN_3.matcher(str);
-		final Map<Integer, Map<Integer, String>> iconPanels2 = new HashMap<>();
-		while (m3.find())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m3.group(1));
-			final int skillId = Integer.parseInt(params.get("skill_id2"));
-			final int skillLvl = Integer.parseInt(params.get("skill_level2"));
-			final int skillSubLvl = Integer.parseInt(params.get("skill_sublevel2"));
-			final String iconPanel2 = params.get("icon_panel2");
-			iconPanels2.computeIfAbsent(skillId, k -> new HashMap<>()).put(getSkillLevelMask(skillLvl, skillSubLvl), iconPanel2);
-			
-			if (actionTask.isCancelled())
+			for (FormatRecord skill : _skills)
 			{
-				return null;
+				final int skillId = Integer.parseInt(skill.get("id"));
+				final int skillLvl = Integer.parseInt(skill.get("level"));
+				final int skillSubLvl = Integer.parseInt(skill.get("sublevel"));
+				final Integer autoUse = _autoUses.get(skillId);
+				skill.put("auto_use_type", (autoUse != null) ? String.valueOf(autoUse) : "0");
+				
+				final String iconPanel2 = _iconPanels2.getOrDefault(skillId, Collections.emptyMap()).getOrDefault(getSkillLevelMask(skillLvl, skillSubLvl), "[]");
+				out.accept(skill.put("icon_panel_2", iconPanel2));
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		
-		final StringBuilder builder = new StringBuilder();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
-		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int skillId = Integer.parseInt(params.get("id"));
-			final int skillLvl = Integer.parseInt(params.get("level"));
-			final int skillSubLvl = Integer.parseInt(params.get("sublevel"));
-			final Integer autoUse = autoUses.get(skillId);
-			if (autoUse != null)
-			{
-				params.put("auto_use_type", String.valueOf(autoUse));
-			}
-			else
-			{
-				params.put("auto_use_type", "0");
-			}
-			
-			final String iconPanel2 = iconPanels2.getOrDefault(skillId, Collections.emptyMap()).getOrDefault(getSkillLevelMask(skillLvl, skillSubLvl), "[]");
-			params.put("icon_panel_2", iconPanel2);
-			builder.append("skill_begin\t").append(Util.mapToString(params)).append("skill_end").append("\r\n");
-			
-			if (actionTask.isCancelled())
-			{
-				return null;
-			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
-		}
-		
-		return builder.toString();
 	}
 	
-	@Override
-	public String encode(ActionTask actionTask, double progressWeight, String str)
+	/**
+	 * Moves the auto use type and second icon panel of skill records into skill_autouse and icon_panel_2 records, written after the skills.
+	 */
+	private static class Encoder implements RecordFormatter
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		private final Map<Integer, Integer> _autoUses = new LinkedHashMap<>();
+		private final Map<Integer, Map<Integer, String>> _iconPanels2 = new LinkedHashMap<>();
 		
-		final StringBuilder builder = new StringBuilder();
-		final Map<Integer, Integer> autoUses = new LinkedHashMap<>();
-		final Map<Integer, Map<Integer, String>> iconPanels2 = new LinkedHashMap<>();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			final int id = Integer.parseInt(params.get("id"));
-			final int level = Integer.parseInt(params.get("level"));
-			final int sublevel = Integer.parseInt(params.get("sublevel"));
-			final String autoUseType = params.remove("auto_use_type");
-			final int type = autoUseType == null ? 0 : Integer.parseInt(autoUseType);
-			if (type != 0)
+			if (!record.getName().equals("skill"))
 			{
-				autoUses.put(id, type);
+				return;
 			}
 			
-			final String iconPanel2 = params.remove("icon_panel_2");
-			if ((iconPanel2 != null) && !iconPanel2.equalsIgnoreCase("[]"))
-			{
-				iconPanels2.computeIfAbsent(id, k -> new LinkedHashMap<>()).put(getSkillLevelMask(level, sublevel), iconPanel2);
-			}
-			builder.append("skill_begin\t").append(Util.mapToString(params)).append("skill_end\r\n");
-			
-			if (actionTask.isCancelled())
+			final int id = Integer.parseInt(record.get("id"));
+			final int level = Integer.parseInt(record.get("level"));
+			final int sublevel = Integer.parseInt(record.get("sublevel"));
+			final String autoUseType = record.remove("auto_use_type");
+			final int type = autoUseType == null ? 0 : Integer.parseInt(autoUseType);
+			if (type != 0)
 			{
-				return null;
+				_autoUses.put(id, type);
 			}
 			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
-		}
-		
-		for (Entry<Integer, Integer> entry : autoUses.entrySet())
-		{
-			builder.append("skill_autouse_begin\tskill_id=").append(entry.getKey()).append("\tauto_use_type=").append(entry.getValue()).append("\tskill_autouse_end\r\n");
-			
-			if (actionTask.isCancelled())
+			final String iconPanel2 = record.remove("icon_panel_2");
+			if ((iconPanel2 != null) && !iconPanel2.equalsIgnoreCase("[]"))
 			{
-				return null;
+				_iconPanels2.computeIfAbsent(id, k -> new LinkedHashMap<>()).put(getSkillLevelMask(level, sublevel), iconPanel2);
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
+			out.accept(record);
 		}
 		
-		for (Entry<Integer, Map<Integer, String>> entry : iconPanels2.entrySet())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			final int skillId = entry.getKey();
-			for (Entry<Integer, String> entry1 : entry.getValue().entrySet())
+			for (Entry<Integer, Integer> entry : _autoUses.entrySet())
 			{
-				int skillLvl = getSkillLevelFromMask(entry1.getKey());
-				int skillSubLvl = getSubSkillLevelFromMask(entry1.getKey());
-				builder.append("icon_panel_2_begin\tskill_id2=").append(skillId).append("\tskill_level2=").append(skillLvl).append("\tskill_sublevel2=").append(skillSubLvl).append("\ticon_panel2=").append(entry1.getValue()).append("\ticon_panel_2_end\r\n");
+				out.accept(new FormatRecord("skill_autouse").put("skill_id", String.valueOf(entry.getKey())).put("auto_use_type", String.valueOf(entry.getValue())));
 			}
 			
-			if (actionTask.isCancelled())
+			for (Entry<Integer, Map<Integer, String>> entry : _iconPanels2.entrySet())
 			{
-				return null;
+				final int skillId = entry.getKey();
+				for (Entry<Integer, String> entry1 : entry.getValue().entrySet())
+				{
+					final int skillLvl = getSkillLevelFromMask(entry1.getKey());
+					final int skillSubLvl = getSubSkillLevelFromMask(entry1.getKey());
+					out.accept(new FormatRecord("icon_panel_2").put("skill_id2", String.valueOf(skillId)).put("skill_level2", String.valueOf(skillLvl)).put("skill_sublevel2", String.valueOf(skillSubLvl)).put("icon_panel2", entry1.getValue()));
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		return builder.toString();
 	}
 }
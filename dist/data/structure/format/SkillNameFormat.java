@@ -20,17 +20,24 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
-import org.l2jmobius.actions.ActionTask;
-import org.l2jmobius.listeners.FormatListener;
-import org.l2jmobius.util.Util;
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatListener;
+import org.l2jmobius.listeners.RecordFormatter;
 
-public class SkillNameFormat implements FormatListener
+public class SkillNameFormat implements RecordFormatListener
 {
-	private static final Pattern PATTERN = Pattern.compile("\\bskill_txt_begin\\b(.*?)\\bskill_txt_end\\b", Pattern.DOTALL);
-	private static final Pattern PATTERN_2 = Pattern.compile("\\bskill_begin\\b(.*?)\\bskill_end\\b", Pattern.DOTALL);
+	private static final String[] TEXT_PARAMS =
+	{
+		"name",
+		"desc",
+		"desc_param",
+		"enchant_name",
+		"enchant_name_param",
+		"enchant_desc",
+		"enchant_desc_param"
+	};
 	
 	private static class SkillData implements Comparable<SkillData>
 	{
@@ -64,137 +71,104 @@ public class SkillNameFormat implements FormatListener
 	}
 	
 	@Override
-	public String decode(ActionTask actionTask, double progressWeight, String str)
+	public RecordFormatter newDecoder()
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
-		
-		final Matcher m = PATTERN.matcher(str);
-		final Map<Integer, String> indexes = new HashMap<>();
-		while (m.find())
-		{
-			final Map<String, String> params = Util.stringToMap(m.group(1));
-			final String text = params.get("text");
-			indexes.put(Integer.valueOf(params.get("index")), text.substring(1, text.length() - 1));
-			
-			if (actionTask.isCancelled())
-			{
-				return null;
-			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
-		}
+		return new Decoder();
+	}
+	
+	@Override
+	public RecordFormatter newEncoder()
+	{
+		return new Encoder();
+	}
+	
+	/**
+	 * Replaces the text indexes of skill records by the texts of the skill_txt records.<br>
+	 * The skill_txt records come first in the file, so skill records are written as they come.
+	 */
+	private static class Decoder implements RecordFormatter
+	{
+		private final Map<Integer, String> _indexes = new HashMap<>();
 		
-		final StringBuilder builder = new StringBuilder();
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			setNameByIndex(indexes, params, "name");
-			setNameByIndex(indexes, params, "desc");
-			setNameByIndex(indexes, params, "desc_param");
-			setNameByIndex(indexes, params, "enchant_name");
-			setNameByIndex(indexes, params, "enchant_name_param");
-			setNameByIndex(indexes, params, "enchant_desc");
-			setNameByIndex(indexes, params, "enchant_desc_param");
-			
-			builder.append("skill_begin\t").append(Util.mapToString(params)).append("skill_end").append("\r\n");
-			
-			if (actionTask.isCancelled())
+			switch (record.getName())
 			{
-				return null;
+				case "skill_txt":
+				{
+					final String text = record.get("text");
+					_indexes.put(Integer.valueOf(record.get("index")), text.substring(1, text.length() - 1));
+					break;
+				}
+				case "skill":
+				{
+					for (String paramName : TEXT_PARAMS)
+					{
+						record.put(paramName, "[" + _indexes.get(Integer.parseInt(record.get(paramName))) + "]");
+					}
+					out.accept(record);
+					break;
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
 		}
-		
-		return builder.toString();
 	}
 	
-	@Override
-	public String encode(ActionTask actionTask, double progressWeight, String str)
+	/**
+	 * Replaces the texts of skill records by indexes of skill_txt records, written before the skills sorted by id, level and sub level.<br>
+	 * Skill records are held until the end, as a compact line.
+	 */
+	private static class Encoder implements RecordFormatter
 	{
-		final int lineCount = str.split("\r\n|\r|\n").length;
-		if (lineCount == 0)
-		{
-			return "";
-		}
-		
-		double progress = actionTask.getCurrentProgress();
-		final double progressDiff = 100. / lineCount;
+		private final Map<String, String> _indexes = new LinkedHashMap<>();
+		private final List<SkillData> _sorted = new ArrayList<>();
 		
-		final Map<String, String> indexes = new LinkedHashMap<>();
-		final List<SkillData> sorted = new ArrayList<>();
-		
-		final Matcher m2 = PATTERN_2.matcher(str);
-		while (m2.find())
+		@Override
+		public void format(FormatRecord record, Consumer<FormatRecord> out)
 		{
-			final Map<String, String> params = Util.stringToMap(m2.group(1));
-			setIndexByName(indexes, params, "name");
-			setIndexByName(indexes, params, "desc");
-			setIndexByName(indexes, params, "desc_param");
-			setIndexByName(indexes, params, "enchant_name");
-			setIndexByName(indexes, params, "enchant_name_param");
-			setIndexByName(indexes, params, "enchant_desc");
-			setIndexByName(indexes, params, "enchant_desc_param");
-			
-			final String result = "skill_begin\t" + Util.mapToString(params) + "skill_end\r\n";
-			
-			final int id = Integer.parseInt(params.get("skill_id"));
-			final int level = Integer.parseInt(params.get("skill_level"));
-			final int subLevel = Integer.parseInt(params.get("skill_sublevel"));
-			
-			sorted.add(new SkillData(id, level, subLevel, result));
+			if (!record.getName().equals("skill"))
+			{
+				return;
+			}
 			
-			if (actionTask.isCancelled())
+			for (String paramName : TEXT_PARAMS)
 			{
-				return null;
+				setIndexByName(record, paramName);
 			}
 			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
+			final int id = Integer.parseInt(record.get("skill_id"));
+			final int level = Integer.parseInt(record.get("skill_level"));
+			final int subLevel = Integer.parseInt(record.get("skill_sublevel"));
+			_sorted.add(new SkillData(id, level, subLevel, record.toString()));
 		}
 		
-		final StringBuilder builder = new StringBuilder();
-		for (String key : indexes.keySet())
+		@Override
+		public void finish(Consumer<FormatRecord> out)
 		{
-			builder.append("skill_txt_begin\ttext=").append(key).append("\tindex=").append(indexes.get(key)).append("\tskill_txt_end\r\n");
-			
-			if (actionTask.isCancelled())
+			for (Map.Entry<String, String> entry : _indexes.entrySet())
 			{
-				return null;
+				out.accept(new FormatRecord("skill_txt").put("text", entry.getKey()).put("index", entry.getValue()));
 			}
 			
-			progress = actionTask.addProgress(progress, progressDiff, progressWeight);
+			Collections.sort(_sorted);
+			for (SkillData skill : _sorted)
+			{
+				out.accept(FormatRecord.parse(skill.data));
+			}
 		}
 		
-		Collections.sort(sorted);
-		sorted.forEach((s) -> builder.append(s.data));
-		
-		return builder.toString();
-	}
-	
-	private void setNameByIndex(Map<Integer, String> indexes, Map<String, String> params, String paramName)
-	{
-		params.put(paramName, "[" + indexes.get(Integer.parseInt(params.get(paramName))) + "]");
-	}
-	
-	private void setIndexByName(Map<String, String> indexes, Map<String, String> params, String paramName)
-	{
-		final String name = params.get(paramName);
-		if (indexes.containsKey(name))
+		private void setIndexByName(FormatRecord record, String paramName)
 		{
-			params.put(paramName, indexes.get(name));
-			return;
+			final String name = record.get(paramName);
+			if (_indexes.containsKey(name))
+			{
+				record.put(paramName, _indexes.get(name));
+				return;
+			}
+			
+			final String index = String.valueOf(_indexes.size());
+			_indexes.put(name, index);
+			record.put(paramName, index);
 		}
-		
-		final String index = String.valueOf(indexes.size());
-		indexes.put(name, index);
-		params.put(paramName, index);
 	}
 }
@@ -73,11 +73,12 @@ import org.l2jmobius.clientcryptor.crypt.DatCrypter;
 import org.l2jmobius.config.ConfigDebug;
 import org.l2jmobius.config.ConfigWindow;
 import org.l2jmobius.forms.JPopupTextArea;
+import org.l2jmobius.listeners.TaskListener;
 import org.l2jmobius.util.Util;
 import org.l2jmobius.xml.CryptVersionParser;
 import org.l2jmobius.xml.DescriptorParser;
 
-public class L2ClientDat extends JFrame
+public class L2ClientDat extends JFrame implements TaskListener
 {
 	private static final Logger LOGGER = Logger.getLogger(L2ClientDat.class.getName());
 	
@@ -326,6 +327,12 @@ public class L2ClientDat extends JFrame
 			LOGGER.info(log);
 		}
 		
+		// Without a window, as in command line mode, the logger is the only output.
+		if (_textPaneLog == null)
+		{
+			return;
+		}
+		
 		if (!SwingUtilities.isEventDispatchThread())
 		{
 			SwingUtilities.invokeLater(() -> _textPaneLog.append(log + "\n"));
@@ -566,20 +573,42 @@ public class L2ClientDat extends JFrame
 		ConfigWindow.save(param, String.valueOf(jComboBox.getSelectedItem()));
 	}
 	
+	@Override
 	public void onStartTask()
 	{
+		if (!SwingUtilities.isEventDispatchThread())
+		{
+			SwingUtilities.invokeLater(this::onStartTask);
+			return;
+		}
+		
 		setCursor(Cursor.getPredefinedCursor(3));
 		_progressBar.setValue(0);
 		checkButtons();
 	}
 	
+	@Override
 	public void onProgressTask(int val)
 	{
-		_progressBar.setValue(val);
+		if (!SwingUtilities.isEventDispatchThread())
+		{
+			SwingUtilities.invokeLater(() -> _progressBar.setValue(val));
+		}
+		else
+		{
+			_progressBar.setValue(val);
+		}
 	}
 	
+	@Override
 	public void onStopTask()
 	{
+		if (!SwingUtilities.isEventDispatchThread())
+		{
+			SwingUtilities.invokeLater(this::onStopTask);
+			return;
+		}
+		
 		_progressTask = null;
 		_progressBar.setValue(100);
 		checkButtons();
@@ -587,6 +616,7 @@ public class L2ClientDat extends JFrame
 		setCursor(null);
 	}
 	
+	@Override
 	public void onAbortTask()
 	{
 		if (_progressTask == null)
@@ -594,9 +624,8 @@ public class L2ClientDat extends JFrame
 			return;
 		}
 		
-		_progressTask = null;
-		setCursor(null);
-		checkButtons();
+		// The buttons are enabled again by onStopTask, once the aborted task has returned.
+		_abortTaskButton.setEnabled(false);
 	}
 	
 	private void checkButtons()
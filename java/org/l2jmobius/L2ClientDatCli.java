@@ -0,0 +1,186 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import org.l2jmobius.actions.ActionTask;
+import org.l2jmobius.actions.MassRecryptor;
+import org.l2jmobius.actions.MassTxtPacker;
+import org.l2jmobius.actions.MassTxtUnpacker;
+import org.l2jmobius.actions.OpenDat;
+import org.l2jmobius.config.ConfigDebug;
+import org.l2jmobius.config.ConfigWindow;
+import org.l2jmobius.listeners.TaskListener;
+import org.l2jmobius.xml.CryptVersionParser;
+import org.l2jmobius.xml.DescriptorParser;
+
+/**
+ * Runs the actions of the editor from the command line, without creating any window.<br>
+ * The actions run on the calling thread and report their progress to the logger. Settings are read from the config folder, the encryptor given on the command line only overrides CURRENT_ENCRYPT in memory.
+ */
+public class L2ClientDatCli implements TaskListener
+{
+	private static final Logger LOGGER = Logger.getLogger(L2ClientDatCli.class.getName());
+	
+	private static final int PROGRESS_STEP = 10;
+	
+	private int _lastProgress = 0;
+	
+	public static void main(String[] args)
+	{
+		final File logFolder = new File(".", "log");
+		logFolder.mkdir();
+		
+		try (InputStream is = new FileInputStream(new File("./config/log.cfg")))
+		{
+			LogManager.getLogManager().readConfiguration(is);
+		}
+		catch (Exception e)
+		{
+			LOGGER.log(Level.SEVERE, null, e);
+		}
+		
+		ConfigWindow.load();
+		ConfigDebug.load();
+		CryptVersionParser.getInstance().parse();
+		DescriptorParser.getInstance().parse();
+		
+		if (args.length < 3)
+		{
+			usage();
+			System.exit(1);
+		}
+		
+		final L2ClientDatCli cli = new L2ClientDatCli();
+		final ActionTask task;
+		OpenTask openTask = null;
+		switch (args[0].toLowerCase())
+		{
+			case "open":
+			{
+				final File file = new File(args[2]);
+				final File output = (args.length > 3) ? new File(args[3]) : new File(file.getAbsoluteFile().getParentFile(), file.getName().split("\\.")[0] + ".txt");
+				task = openTask = new OpenTask(cli, args[1], file, output);
+				break;
+			}
+			case "unpack":
+			{
+				task = new MassTxtUnpacker(cli, args[1], args[2]);
+				break;
+			}
+			case "pack":
+			{
+				if (args.length < 4)
+				{
+					usage();
+					System.exit(1);
+				}
+				ConfigWindow.CURRENT_ENCRYPT = args[3];
+				task = new MassTxtPacker(cli, args[1], args[2]);
+				break;
+			}
+			case "recrypt":
+			{
+				ConfigWindow.CURRENT_ENCRYPT = args[2];
+				task = new MassRecryptor(cli, args[1]);
+				break;
+			}
+			default:
+			{
+				usage();
+				System.exit(1);
+				return;
+			}
+		}
+		
+		task.run();
+		System.exit((task.isCancelled() || (task.getFailedCount() > 0) || ((openTask != null) && !openTask.isSaved())) ? 1 : 0);
+	}
+	
+	private static void usage()
+	{
+		LOGGER.info("Usage:");
+		LOGGER.info("  open <chronicle> <file> [output]");
+		LOGGER.info("  unpack <chronicle> <directory>");
+		LOGGER.info("  pack <chronicle> <directory> <encryptor>");
+		LOGGER.info("  recrypt <directory> <encryptor>");
+		LOGGER.info("Chronicles: " + String.join(", ", DescriptorParser.getInstance().getChronicleNames()));
+	}
+	
+	@Override
+	public void onProgressTask(int value)
+	{
+		if ((value >= (_lastProgress + PROGRESS_STEP)) || ((value == 100) && (_lastProgress < 100)))
+		{
+			_lastProgress = value;
+			LOGGER.info("Progress: " + value + "%");
+		}
+	}
+	
+	private static class OpenTask extends ActionTask
+	{
+		private final String _chronicle;
+		private final File _file;
+		private final File _output;
+		private boolean _saved = false;
+		
+		OpenTask(TaskListener listener, String chronicle, File file, File output)
+		{
+			super(listener);
+			_chronicle = chronicle;
+			_file = file;
+			_output = output;
+		}
+		
+		@Override
+		protected void action()
+		{
+			try
+			{
+				// An empty text is also returned when the file could not be decrypted.
+				final String text = OpenDat.start(this, 100.0, _chronicle, _file, false);
+				if ((text == null) || text.isEmpty())
+				{
+					L2ClientDat.addLogConsole("Cannot parse [" + _file.getName() + "]", true);
+					return;
+				}
+				
+				// Same as the mass unpacker, html is written in UTF-16.
+				Files.write(_output.toPath(), text.getBytes(_file.getName().endsWith(".htm") ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8));
+				L2ClientDat.addLogConsole("Saved: " + _output.getPath(), true);
+				_saved = true;
+			}
+			catch (Exception e)
+			{
+				LOGGER.log(Level.SEVERE, null, e);
+			}
+		}
+		
+		boolean isSaved()
+		{
+			return _saved;
+		}
+	}
+}
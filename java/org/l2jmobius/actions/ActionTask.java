@@ -16,23 +16,46 @@
  */
 package org.l2jmobius.actions;
 
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-import java.util.concurrent.ExecutionException;
-
-import javax.swing.SwingWorker;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.l2jmobius.L2ClientDat;
+import org.l2jmobius.config.ConfigDebug;
+import org.l2jmobius.listeners.TaskListener;
 
-public abstract class ActionTask extends SwingWorker<Void, Void> implements PropertyChangeListener
+/**
+ * Base of the long running actions.<br>
+ * Progress and life cycle are reported to a {@link TaskListener}, so the same actions run behind the window and from the command line.
+ */
+public abstract class ActionTask implements Runnable
 {
+	private static final Logger LOGGER = Logger.getLogger(ActionTask.class.getName());
+	
 	protected final L2ClientDat _l2clientdat;
+	private final TaskListener _listener;
+	private volatile boolean _cancelled = false;
+	private final AtomicInteger _failedCount = new AtomicInteger();
+	private volatile Thread _thread = null;
 	private double _progress = 0.0;
+	private int _reportedProgress = 0;
 	
 	public ActionTask(L2ClientDat l2clientdat)
+	{
+		this(l2clientdat, l2clientdat);
+	}
+	
+	public ActionTask(TaskListener listener)
+	{
+		this(null, listener);
+	}
+	
+	private ActionTask(L2ClientDat l2clientdat, TaskListener listener)
 	{
 		_l2clientdat = l2clientdat;
-		addPropertyChangeListener(this);
+		_listener = listener;
 	}
 	
 	public L2ClientDat getL2ClientDat()
@@ -41,16 +64,29 @@ public abstract class ActionTask extends SwingWorker<Void, Void> implements Prop
 	}
 	
 	@Override
-	public Void doInBackground()
+	public void run()
 	{
-		_l2clientdat.onStartTask();
-		setProgress(0);
-		action();
-		if (!isCancelled())
+		_thread = Thread.currentThread();
+		try
 		{
-			setProgress(100);
+			_listener.onStartTask();
+			setProgress(0);
+			action();
+			if (!isCancelled())
+			{
+				setProgress(100);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			LOGGER.log(Level.SEVERE, null, e);
+			addFailed();
+		}
+		finally
+		{
+			_thread = null;
+			_listener.onStopTask();
 		}
-		return null;
 	}
 	
 	protected abstract void action();
@@ -62,8 +98,34 @@ public abstract class ActionTask extends SwingWorker<Void, Void> implements Prop
 			return;
 		}
 		
-		cancel(true);
-		_l2clientdat.onAbortTask();
+		_cancelled = true;
+		final Thread thread = _thread;
+		if (thread != null)
+		{
+			thread.interrupt();
+		}
+		_listener.onAbortTask();
+	}
+	
+	public boolean isCancelled()
+	{
+		return _cancelled;
+	}
+	
+	/**
+	 * Counts a file the action could not process, or the action itself when it stopped on an error.
+	 */
+	protected void addFailed()
+	{
+		_failedCount.incrementAndGet();
+	}
+	
+	/**
+	 * @return the number of files the action could not process
+	 */
+	public int getFailedCount()
+	{
+		return _failedCount.get();
 	}
 	
 	public double addProgress(double progress, double value, double weight)
@@ -72,15 +134,26 @@ public abstract class ActionTask extends SwingWorker<Void, Void> implements Prop
 		return _progress;
 	}
 	
-	public void changeProgress(double value)
+	public synchronized void changeProgress(double value)
 	{
 		final int intValue = (int) Math.max(0.0, Math.min(100.0, value));
-		if (intValue > getProgress())
+		if (intValue > _reportedProgress)
 		{
 			setProgress(intValue);
 		}
 	}
 	
+	private synchronized void setProgress(int value)
+	{
+		_reportedProgress = value;
+		_listener.onProgressTask(value);
+	}
+	
+	public int getProgress()
+	{
+		return _reportedProgress;
+	}
+	
 	public double getCurrentProgress()
 	{
 		return _progress;
@@ -91,29 +164,15 @@ public abstract class ActionTask extends SwingWorker<Void, Void> implements Prop
 		return (value / 100.0) * weight;
 	}
 	
-	@Override
-	public void done()
-	{
-		if (!isCancelled())
-		{
-			try
-			{
-				get();
-			}
-			catch (ExecutionException | InterruptedException e)
-			{
-				e.printStackTrace();
-			}
-		}
-		_l2clientdat.onStopTask();
-	}
-	
-	@Override
-	public void propertyChange(PropertyChangeEvent evt)
+	/**
+	 * Creates the bounded pool used by mass actions to process files concurrently.<br>
+	 * The size is taken from MASS_THREADS (0 means one worker per available processor) and is never larger than the number of jobs.
+	 * @param jobs the number of files that will be submitted
+	 * @return a fixed size worker pool, to be shut down by the caller
+	 */
+	protected static ExecutorService newWorkerPool(int jobs)
 	{
-		if ("progress".equals(evt.getPropertyName()))
-		{
-			_l2clientdat.onProgressTask((int) evt.getNewValue());
-		}
+		final int threads = ConfigDebug.MASS_THREADS > 0 ? ConfigDebug.MASS_THREADS : Runtime.getRuntime().availableProcessors();
+		return Executors.newFixedThreadPool(Math.max(1, Math.min(threads, jobs)));
 	}
 }
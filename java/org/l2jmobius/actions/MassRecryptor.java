@@ -17,9 +17,7 @@
 package org.l2jmobius.actions;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
@@ -30,15 +28,16 @@ import org.l2jmobius.clientcryptor.DatFile;
 import org.l2jmobius.clientcryptor.crypt.DatCrypter;
 import org.l2jmobius.clientcryptor.crypt.RSADatCrypter;
 import org.l2jmobius.config.ConfigWindow;
+import org.l2jmobius.listeners.TaskListener;
 import org.l2jmobius.xml.CryptVersionParser;
 
 public class MassRecryptor extends ActionTask
 {
 	private final String _path;
 	
-	public MassRecryptor(L2ClientDat l2ClientDat, String path)
+	public MassRecryptor(TaskListener listener, String path)
 	{
-		super(l2ClientDat);
+		super(listener);
 		_path = path;
 	}
 	
@@ -115,19 +114,16 @@ public class MassRecryptor extends ActionTask
 			
 			READ:
 			{
-				try (FileInputStream fis = new FileInputStream(file))
+				try
 				{
-					if (fis.available() < 28)
+					final String header = DatFile.readHeader(file);
+					if (header == null)
 					{
 						L2ClientDat.addLogConsole("The file " + file.getName() + " is too small.", true);
+						addFailed();
 						break READ;
 					}
 					
-					final byte[] head = new byte[28];
-					fis.read(head);
-					fis.close();
-					
-					final String header = new String(head, StandardCharsets.UTF_16LE);
 					if (!header.matches("Lineage2Ver41[1-4]"))
 					{
 						L2ClientDat.addLogConsole("File " + file.getName() + " not encrypted. Skip decrypt.", true);
@@ -137,6 +133,7 @@ public class MassRecryptor extends ActionTask
 					final ByteBuffer buffer = OpenDat.decrypt(file, decryptors, false);
 					if (buffer == null)
 					{
+						addFailed();
 						break READ;
 					}
 					
@@ -147,6 +144,7 @@ public class MassRecryptor extends ActionTask
 				catch (Exception e)
 				{
 					L2ClientDat.addLogConsole(file.getName() + " change crypt by " + encrypter.getName() + " encryptor failed!", true);
+					addFailed();
 				}
 				finally
 				{
@@ -16,10 +16,28 @@
  */
 package org.l2jmobius.actions;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,21 +48,30 @@ import org.l2jmobius.clientcryptor.crypt.RSADatCrypter;
 import org.l2jmobius.config.ConfigDebug;
 import org.l2jmobius.config.ConfigWindow;
 import org.l2jmobius.data.GameDataName;
+import org.l2jmobius.listeners.TaskListener;
+import org.l2jmobius.util.FileManifest;
+import org.l2jmobius.util.FileManifest.FileStamp;
 import org.l2jmobius.xml.CryptVersionParser;
 import org.l2jmobius.xml.Descriptor;
 import org.l2jmobius.xml.DescriptorParser;
 import org.l2jmobius.xml.DescriptorWriter;
+import org.l2jmobius.xml.exceptions.UnknownNameException;
 
 public class MassTxtPacker extends ActionTask
 {
 	private static final Logger LOGGER = Logger.getLogger(MassTxtPacker.class.getName());
 	
+	/** Kept in the packed directory, so unchanged text files are not encoded and encrypted again by the next run. */
+	private static final String MANIFEST_NAME = "pack.manifest";
+	/** Names of the last complete pack, so files that added names can be skipped by adding them back. */
+	private static final String NAMES_NAME = "pack.names";
+	
 	private final String _chronicle;
 	private final String _path;
 	
-	public MassTxtPacker(L2ClientDat l2ClientDat, String chronicle, String path)
+	public MassTxtPacker(TaskListener listener, String chronicle, String path)
 	{
-		super(l2ClientDat);
+		super(listener);
 		_chronicle = chronicle;
 		_path = path;
 	}
@@ -59,6 +86,7 @@ public class MassTxtPacker extends ActionTask
 		catch (Exception e)
 		{
 			LOGGER.log(Level.SEVERE, null, e);
+			addFailed();
 		}
 	}
 	
@@ -113,69 +141,364 @@ public class MassTxtPacker extends ActionTask
 		progress = addProgress(progress, 3.0, 100.0);
 		final double progressWeight = 90.0 / files.length;
 		
+		// Besides its own text and descriptor, every packed file depends on these. The name table the files are packed against is part of them, since it decides the index of each name.
+		final File nameTable = new File(packDir, "L2GameDataName.txt");
+		final String settings = String.join("|", _chronicle, encrypter.getName(), "encrypt=" + ConfigDebug.ENCRYPT, "endBytes=" + ConfigDebug.DAT_ADD_END_BYTES, "names=" + ConfigDebug.DAT_REPLACEMENT_NAMES, "enums=" + ConfigDebug.DAT_REPLACEMENT_ENUMS, "crypt=" + FileStamp.checksumOf(new File("./config/cryptVersion.xml")), "gameDataName=" + FileStamp.checksumOf(nameTable));
+		final FileManifest manifest = new FileManifest(new File(packDir, MANIFEST_NAME), settings);
+		try
+		{
+			packAll(manifest, encrypter, files, packDir, progress, progressWeight);
+		}
+		finally
+		{
+			saveManifest(manifest, files);
+		}
+		
+		if (isCancelled())
+		{
+			return;
+		}
+		
+		final long diffTime = (System.currentTimeMillis() - startTime) / 1000L;
+		L2ClientDat.addLogConsole("Completed. Elapsed ".concat(String.valueOf(diffTime)).concat(" sec"), true);
+	}
+	
+	private void packAll(FileManifest manifest, DatCrypter encrypter, File[] files, File packDir, double progress, double progressWeight) throws Exception
+	{
+		// The name table goes first, every other file may resolve names from it. It is always packed, its output is replaced by checkAndUpdate.
+		final List<File> others = new ArrayList<>(files.length);
 		for (File file : files)
 		{
 			if (file.getName().equalsIgnoreCase("L2GameDataName.txt"))
 			{
-				pack(this, progressWeight, _chronicle, encrypter, file, packDir);
-				break;
+				report(pack(this, _chronicle, encrypter, file, packDir));
+				progress = addProgress(progress, progressWeight, 100.0);
+			}
+			else
+			{
+				others.add(file);
 			}
 		}
 		
-		for (File file : files)
+		// Files are packed concurrently against a frozen name table. A file that introduces new names is
+		// deferred and packed afterwards in directory order, so new names get the same indexes as a sequential pack.
+		final List<File> deferred = new ArrayList<>();
+		int upToDate = 0;
+		boolean skippedNames = false;
+		final ExecutorService executor = newWorkerPool(others.size());
+		GameDataName.getInstance().setAppendLocked(true);
+		try
 		{
-			if (!file.getName().equalsIgnoreCase("L2GameDataName.txt"))
+			final List<Future<PackResult>> results = new ArrayList<>(others.size());
+			for (File file : others)
+			{
+				results.add(executor.submit(() -> packIfChanged(manifest, encrypter, file, packDir)));
+			}
+			
+			for (int i = 0; i < others.size(); ++i)
 			{
-				pack(this, progressWeight, _chronicle, encrypter, file, packDir);
+				if (isCancelled())
+				{
+					results.forEach(f -> f.cancel(true));
+					return;
+				}
+				
+				final PackResult result;
+				try
+				{
+					result = results.get(i).get();
+				}
+				catch (CancellationException | ExecutionException e)
+				{
+					LOGGER.log(Level.WARNING, e.getMessage(), e);
+					addFailed();
+					continue;
+				}
+				
+				final String name = others.get(i).getName();
+				if (result.deferred)
+				{
+					deferred.add(others.get(i));
+					continue;
+				}
+				
+				if (result == PackResult.UP_TO_DATE)
+				{
+					skippedNames |= manifest.get(name).usesNames();
+					++upToDate;
+				}
+				else
+				{
+					record(manifest, name, result.entry);
+				}
+				
+				report(result);
+				progress = addProgress(progress, progressWeight, 100.0);
 			}
 		}
+		catch (InterruptedException e)
+		{
+			return;
+		}
+		finally
+		{
+			GameDataName.getInstance().setAppendLocked(false);
+			executor.shutdownNow();
+		}
+		
+		final File nameTable = new File(packDir, "L2GameDataName.txt");
+		final Map<String, FileManifest.Entry> deferredEntries = new LinkedHashMap<>();
+		if (!deferred.isEmpty())
+		{
+			GameDataName.getInstance().ensureLoaded(nameTable, encrypter);
+		}
+		
+		// While every deferred file so far was unchanged, the table is the same as last time and an unchanged file can be skipped by adding its names back.
+		List<String> previousNames = null;
+		boolean replay = true;
+		for (File file : deferred)
+		{
+			if (isCancelled())
+			{
+				return;
+			}
+			
+			final int sizeBefore = GameDataName.getInstance().size();
+			if (replay)
+			{
+				final FileManifest.Entry entry = manifest.get(file.getName());
+				if ((entry != null) && entry.addsNames() && (entry.getNamesBefore() == sizeBefore) && isUpToDate(entry, _chronicle, file, packDir))
+				{
+					if (previousNames == null)
+					{
+						previousNames = readNames(new File(packDir, NAMES_NAME));
+					}
+					
+					if (previousNames.size() >= entry.getNamesAfter())
+					{
+						GameDataName.getInstance().append(previousNames.subList(entry.getNamesBefore(), entry.getNamesAfter()));
+						++upToDate;
+						progress = addProgress(progress, progressWeight, 100.0);
+						continue;
+					}
+				}
+				replay = false;
+			}
+			
+			final PackResult result = pack(this, _chronicle, encrypter, file, packDir);
+			manifest.remove(file.getName());
+			if (result.entry != null)
+			{
+				deferredEntries.put(file.getName(), result.entry.withNamesRange(sizeBefore, GameDataName.getInstance().size()));
+			}
+			report(result);
+			progress = addProgress(progress, progressWeight, 100.0);
+		}
 		
 		if (isCancelled())
 		{
 			return;
 		}
 		
+		if (upToDate > 0)
+		{
+			L2ClientDat.addLogConsole("Up to date " + upToDate + " of " + files.length + " files.", true);
+		}
+		
+		// The skipped files would have loaded the table, it must still be written as in a full pack.
+		if (skippedNames)
+		{
+			GameDataName.getInstance().ensureLoaded(nameTable, encrypter);
+		}
+		
 		progress = addProgress(progress, 90.0, 100.0);
 		GameDataName.getInstance().checkAndUpdate(packDir.getPath(), encrypter);
 		
+		// Entries of repacked deferred files refer to the names written here, they are only recorded once the table is complete.
+		if (!deferred.isEmpty())
+		{
+			try
+			{
+				writeNames(new File(packDir, NAMES_NAME), GameDataName.getInstance().getNames());
+				deferredEntries.forEach(manifest::put);
+			}
+			catch (IOException e)
+			{
+				LOGGER.log(Level.WARNING, "Cannot write the packed names.", e);
+			}
+		}
+		
 		if (isCancelled())
 		{
 			return;
 		}
 		
 		addProgress(progress, 5.0, 100.0);
-		final long diffTime = (System.currentTimeMillis() - startTime) / 1000L;
-		L2ClientDat.addLogConsole("Completed. Elapsed ".concat(String.valueOf(diffTime)).concat(" sec"), true);
 	}
 	
-	private static void pack(ActionTask actionTask, double weight, String chronicle, DatCrypter encrypter, File file, File packDir)
+	/**
+	 * Packs a file on a worker thread, unless it did not change since it was last packed.
+	 */
+	private PackResult packIfChanged(FileManifest manifest, DatCrypter encrypter, File file, File packDir)
+	{
+		final FileManifest.Entry entry = manifest.get(file.getName());
+		if ((entry != null) && isUpToDate(entry, _chronicle, file, packDir))
+		{
+			// Against the same table it would add the same names again, so it goes straight to the deferred pass.
+			return entry.addsNames() ? PackResult.DEFERRED : PackResult.UP_TO_DATE;
+		}
+		return pack(this, _chronicle, encrypter, file, packDir);
+	}
+	
+	private static void record(FileManifest manifest, String name, FileManifest.Entry entry)
+	{
+		if (entry != null)
+		{
+			manifest.put(name, entry);
+		}
+		else
+		{
+			manifest.remove(name);
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the file, its packed output and its descriptor did not change since it was last packed
+	 */
+	private static boolean isUpToDate(FileManifest.Entry entry, String chronicle, File file, File packDir)
 	{
-		double progress = actionTask.getCurrentProgress();
-		L2ClientDat.addLogConsole("Start packing [" + file.getName() + "]...", true);
+		if (!entry.isUpToDate(file, packDir))
+		{
+			return false;
+		}
+		
+		final Descriptor desc = findDescriptor(chronicle, file);
+		return entry.getVersion() == ((desc != null) ? desc.getVersion() : 0);
+	}
+	
+	private static Descriptor findDescriptor(String chronicle, File file)
+	{
+		if (file.getName().endsWith(".dat") || file.getName().endsWith(".txt"))
+		{
+			return DescriptorParser.getInstance().findDescriptorForFile(chronicle, file.getName().replace(".txt", ".dat"));
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the names of the last complete pack, empty if they cannot be read
+	 */
+	private static List<String> readNames(File file)
+	{
+		if (file.isFile())
+		{
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()))))
+			{
+				final int size = in.readInt();
+				final List<String> names = new ArrayList<>(size);
+				for (int i = 0; i < size; ++i)
+				{
+					names.add(in.readUTF());
+				}
+				return names;
+			}
+			catch (IOException e)
+			{
+				LOGGER.log(Level.WARNING, "Ignoring broken packed names " + file.getPath(), e);
+			}
+		}
+		return Collections.emptyList();
+	}
+	
+	private static void writeNames(File file, List<String> names) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath()))))
+		{
+			out.writeInt(names.size());
+			for (String name : names)
+			{
+				out.writeUTF(name);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the manifest, dropping the files that are no longer in the directory.
+	 */
+	private static void saveManifest(FileManifest manifest, File[] files)
+	{
+		final Set<String> names = new HashSet<>();
+		for (File file : files)
+		{
+			names.add(file.getName());
+		}
+		manifest.retainAll(names);
 		
 		try
 		{
+			manifest.save();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Cannot write the pack manifest.", e);
+		}
+	}
+	
+	/**
+	 * Logs the messages of a result and counts it as failed if the file was neither skipped, deferred nor written.
+	 */
+	private void report(PackResult result)
+	{
+		for (String message : result.messages)
+		{
+			L2ClientDat.addLogConsole(message, true);
+		}
+		
+		if ((result != PackResult.UP_TO_DATE) && !result.deferred && (result.entry == null) && !isCancelled())
+		{
+			addFailed();
+		}
+	}
+	
+	/**
+	 * Packs a single file, possibly on a worker thread.<br>
+	 * Progress is reported by the caller and console messages are collected in the result, so they can be flushed in file order.
+	 * @param actionTask the running task
+	 * @param chronicle the structure chronicle
+	 * @param encrypter the encrypter of the packed files
+	 * @param file the text file to pack
+	 * @param packDir the output directory
+	 * @return the pack result of the file
+	 */
+	private static PackResult pack(ActionTask actionTask, String chronicle, DatCrypter encrypter, File file, File packDir)
+	{
+		final PackResult result = new PackResult();
+		result.messages.add("Start packing [" + file.getName() + "]...");
+		
+		try
+		{
+			final FileStamp source = FileStamp.of(file);
 			final File outFile = new File(packDir, file.getName().replace(".txt", ".dat"));
+			final Descriptor desc = findDescriptor(chronicle, file);
 			byte[] buff = null;
 			boolean shouldContinue = true;
 			
 			if (file.getName().endsWith(".dat") || file.getName().endsWith(".txt"))
 			{
-				final Descriptor desc = DescriptorParser.getInstance().findDescriptorForFile(chronicle, file.getName().replace(".txt", ".dat"));
 				if (desc != null)
 				{
-					final byte[] array = Files.readAllBytes(file.toPath());
-					final String joined = new String(array, 0, array.length, StandardCharsets.UTF_8);
-					buff = DescriptorWriter.parseData(actionTask, actionTask.getWeightValue(80.0, weight), outFile, encrypter, desc, joined.replace("\n", "\r\n"), true);
+					try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))
+					{
+						buff = DescriptorWriter.parseData(actionTask, 0.0, outFile, encrypter, desc, reader, true);
+					}
 					if (actionTask.isCancelled())
 					{
 						shouldContinue = false;
 					}
-					progress = actionTask.addProgress(progress, 80.0, weight);
 				}
 				else
 				{
-					L2ClientDat.addLogConsole("Not found the structure of the file: " + file.getName(), true);
+					result.messages.add("Not found the structure of the file: " + file.getName());
 				}
 			}
 			else if (file.getName().endsWith(".ini"))
@@ -186,7 +509,7 @@ public class MassTxtPacker extends ActionTask
 			}
 			else
 			{
-				L2ClientDat.addLogConsole("Unknown file [" + file.getName() + "] type!", true);
+				result.messages.add("Unknown file [" + file.getName() + "] type!");
 				shouldContinue = false;
 			}
 			
@@ -204,24 +527,44 @@ public class MassTxtPacker extends ActionTask
 						os.write(buff);
 						os.close();
 					}
-					L2ClientDat.addLogConsole("Success packed [" + file.getName() + "]", true);
+					result.messages.add("Success packed [" + file.getName() + "]");
+					final long version = (desc != null) ? desc.getVersion() : 0;
+					final boolean usesNames = (desc != null) && ConfigDebug.DAT_REPLACEMENT_NAMES && desc.usesGameDataNames();
+					result.entry = new FileManifest.Entry(source, encrypter.getName(), version, usesNames, outFile.getName(), FileStamp.of(outFile));
 				}
 				catch (Exception e)
 				{
 					LOGGER.log(Level.WARNING, e.getMessage(), e);
 				}
 			}
-			
-			if (actionTask.isCancelled())
-			{
-				return;
-			}
-			
-			actionTask.addProgress(progress, 20.0, weight);
+		}
+		catch (UnknownNameException e)
+		{
+			result.messages.clear();
+			result.deferred = true;
 		}
 		catch (Exception e2)
 		{
 			LOGGER.log(Level.WARNING, e2.getMessage(), e2);
 		}
+		
+		return result;
+	}
+	
+	private static class PackResult
+	{
+		/** Shared result of the files that are skipped. */
+		static final PackResult UP_TO_DATE = new PackResult();
+		/** Shared result of the unchanged files that added names last time, they are handled by the deferred pass. */
+		static final PackResult DEFERRED = new PackResult();
+		static
+		{
+			DEFERRED.deferred = true;
+		}
+		
+		final List<String> messages = new ArrayList<>();
+		boolean deferred;
+		/** The manifest entry of the file, set once it is written. */
+		FileManifest.Entry entry;
 	}
 }
@@ -16,28 +16,52 @@
  */
 package org.l2jmobius.actions;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.l2jmobius.L2ClientDat;
+import org.l2jmobius.clientcryptor.DatFile;
 import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.config.ConfigDebug;
 import org.l2jmobius.data.GameDataName;
+import org.l2jmobius.listeners.TaskListener;
+import org.l2jmobius.util.FileManifest;
+import org.l2jmobius.util.FileManifest.FileStamp;
+import org.l2jmobius.xml.Descriptor;
+import org.l2jmobius.xml.DescriptorParser;
 
 public class MassTxtUnpacker extends ActionTask
 {
 	private static final Logger LOGGER = Logger.getLogger(MassTxtUnpacker.class.getName());
 	
+	/** Kept in the unpacked directory, so outputs of unchanged files are not rebuilt by the next run. */
+	private static final String MANIFEST_NAME = "unpack.manifest";
+	
 	private final String _chronicle;
 	private final String _path;
+	private FileManifest _manifest;
 	
-	public MassTxtUnpacker(L2ClientDat l2ClientDat, String chronicle, String path)
+	public MassTxtUnpacker(TaskListener listener, String chronicle, String path)
 	{
-		super(l2ClientDat);
+		super(listener);
 		_chronicle = chronicle;
 		_path = path;
 	}
@@ -52,6 +76,7 @@ public class MassTxtUnpacker extends ActionTask
 		catch (Exception e)
 		{
 			LOGGER.log(Level.SEVERE, null, e);
+			addFailed();
 		}
 	}
 	
@@ -86,69 +111,222 @@ public class MassTxtUnpacker extends ActionTask
 		double progress = getCurrentProgress();
 		final double progressWeight = 100.0 / files.length;
 		
-		for (File file : files)
+		// Besides its own content and descriptor, every output depends on these.
+		final String settings = String.join("|", _chronicle, "names=" + ConfigDebug.DAT_REPLACEMENT_NAMES, "enums=" + ConfigDebug.DAT_REPLACEMENT_ENUMS, "crypt=" + FileStamp.checksumOf(new File("./config/cryptVersion.xml")), "gameDataName=" + FileStamp.checksumOf(new File(baseDir, "L2GameDataName.dat")));
+		_manifest = new FileManifest(new File(unpackDir, MANIFEST_NAME), settings);
+		
+		// Files are unpacked concurrently, but results are reported in directory order to keep the log deterministic.
+		final ExecutorService executor = newWorkerPool(files.length);
+		final List<Future<UnpackResult>> results = new ArrayList<>(files.length);
+		int unpacked = 0;
+		int upToDate = 0;
+		try
 		{
-			if (isCancelled())
+			for (File file : files)
 			{
-				L2ClientDat.addLogConsole("Cancelled.", true);
-				return;
+				results.add(executor.submit(() -> unpack(file, unpackDirPath)));
 			}
 			
-			try (FileInputStream fis = new FileInputStream(file))
+			for (int i = 0; i < files.length; ++i)
 			{
-				L2ClientDat.addLogConsole("Start unpacking [" + file.getName() + "]...", true);
-				if (fis.available() < 28)
+				if (isCancelled())
+				{
+					results.forEach(f -> f.cancel(true));
+					L2ClientDat.addLogConsole("Cancelled.", true);
+					return;
+				}
+				
+				UnpackResult result;
+				try
+				{
+					result = results.get(i).get();
+				}
+				catch (CancellationException | ExecutionException e)
+				{
+					LOGGER.log(Level.WARNING, ("[" + files[i].getName() + "] decrypt failed."), e);
+					result = new UnpackResult();
+					result.failed = true;
+				}
+				
+				for (String message : result.messages)
+				{
+					L2ClientDat.addLogConsole(message, true);
+				}
+				
+				if (result.unpacked)
 				{
-					L2ClientDat.addLogConsole("[" + file.getName() + "] is too small.", true);
+					++unpacked;
+				}
+				else if (result.upToDate)
+				{
+					++upToDate;
+				}
+				else if (result.failed)
+				{
+					addFailed();
+				}
+				
+				progress = addProgress(progress, progressWeight, 100.0);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			L2ClientDat.addLogConsole("Cancelled.", true);
+			return;
+		}
+		finally
+		{
+			executor.shutdownNow();
+			saveManifest(files);
+		}
+		
+		final long diffTime = (System.currentTimeMillis() - startTime) / 1000L;
+		final int failed = getFailedCount();
+		L2ClientDat.addLogConsole("Unpacked " + unpacked + ", up to date " + upToDate + ", failed " + failed + ", skipped " + (files.length - unpacked - upToDate - failed) + " of " + files.length + " files.", true);
+		L2ClientDat.addLogConsole("Completed. Elapsed ".concat(String.valueOf(diffTime)).concat(" sec"), true);
+	}
+	
+	/**
+	 * Unpacks a single file on a worker thread.<br>
+	 * Console messages are collected in the result instead of being logged directly, so they can be flushed in file order.
+	 * @param file the client file to unpack
+	 * @param unpackDirPath the output directory
+	 * @return the unpack result of the file
+	 */
+	private UnpackResult unpack(File file, String unpackDirPath)
+	{
+		final UnpackResult result = new UnpackResult();
+		if (isCancelled())
+		{
+			return result;
+		}
+		
+		final File unpackDir = new File(unpackDirPath);
+		final FileManifest.Entry entry = _manifest.get(file.getName());
+		if ((entry != null) && entry.isUpToDate(file, unpackDir) && (entry.getVersion() == getDescriptorVersion(file)))
+		{
+			result.upToDate = true;
+			return result;
+		}
+		_manifest.remove(file.getName());
+		
+		try
+		{
+			result.messages.add("Start unpacking [" + file.getName() + "]...");
+			final FileStamp source = FileStamp.of(file);
+			final String header = DatFile.readHeader(file);
+			if (header == null)
+			{
+				result.messages.add("[" + file.getName() + "] is too small.");
+			}
+			else
+			{
+				if (!header.matches("Lineage2Ver41[1-4]"))
+				{
+					result.messages.add("[" + file.getName() + "] not encrypted. Skip decrypt.");
 				}
 				else
 				{
-					final byte[] head = new byte[28];
-					fis.read(head);
-					fis.close();
-					final String header = new String(head, StandardCharsets.UTF_16LE);
-					if (!header.matches("Lineage2Ver41[1-4]"))
+					// Progress is reported by the dispatching thread once the file is done.
+					final ByteBuffer buffer = OpenDat.decrypt(file, true);
+					final DatCrypter crypter = (buffer != null) ? OpenDat.getLastDatCrypter(file) : null;
+					if ((crypter != null) && crypter.isUseStructure() && file.getName().endsWith(".dat"))
 					{
-						L2ClientDat.addLogConsole("[" + file.getName() + "] not encrypted. Skip decrypt.", true);
+						// Structured files are written while they are read, so large grp files are never held in memory as a whole.
+						final Path target = Paths.get(unpackDirPath, file.getName().replace(".dat", ".txt"));
+						long written = -1;
+						try (Writer writer = new OutputStreamWriter(new BufferedOutputStream(Files.newOutputStream(target)), StandardCharsets.UTF_8))
+						{
+							written = OpenDat.unpack(this, _chronicle, file, buffer, writer);
+						}
+						finally
+						{
+							if (written <= 0)
+							{
+								Files.deleteIfExists(target);
+							}
+						}
+						
+						if (written > 0)
+						{
+							result.messages.add("Success unpacked [" + file.getName() + "]");
+							result.unpacked = true;
+							record(file, source, crypter, target.toFile());
+						}
+						else if (written < 0)
+						{
+							result.messages.add("Cannot parse [" + file.getName() + "]");
+							result.failed = true;
+						}
 					}
 					else
 					{
-						final String text = OpenDat.start(this, progressWeight, _chronicle, file, true);
+						final String text = OpenDat.start(this, 0.0, _chronicle, file, buffer, true);
 						if (text == null)
 						{
-							L2ClientDat.addLogConsole("Cannot parse [" + file.getName() + "]", true);
+							result.messages.add("Cannot parse [" + file.getName() + "]");
+							result.failed = true;
 						}
 						else if (!text.isEmpty())
 						{
-							final DatCrypter crypter = OpenDat.getLastDatCrypter(file);
-							String charset = "UTF-8";
-							String name = file.getName();
-							if (crypter.isUseStructure() && file.getName().endsWith(".dat"))
-							{
-								name = name.replace(".dat", ".txt");
-							}
-							else if (name.endsWith(".htm"))
-							{
-								charset = "UTF-16";
-							}
-							
-							Files.write(Paths.get(unpackDirPath, name), text.getBytes(charset));
-							L2ClientDat.addLogConsole("Success unpacked [" + file.getName() + "]", true);
+							final String charset = file.getName().endsWith(".htm") ? "UTF-16" : "UTF-8";
+							final Path target = Paths.get(unpackDirPath, file.getName());
+							Files.write(target, text.getBytes(charset));
+							result.messages.add("Success unpacked [" + file.getName() + "]");
+							result.unpacked = true;
+							record(file, source, crypter, target.toFile());
 						}
 					}
 				}
 			}
-			catch (Exception e3)
-			{
-				LOGGER.log(Level.WARNING, ("[" + file.getName() + "] decrypt failed."));
-			}
-			finally
-			{
-				progress = addProgress(progress, progressWeight, 100.0);
-			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.log(Level.WARNING, ("[" + file.getName() + "] decrypt failed."));
+			result.failed = true;
 		}
 		
-		final long diffTime = (System.currentTimeMillis() - startTime) / 1000L;
-		L2ClientDat.addLogConsole("Completed. Elapsed ".concat(String.valueOf(diffTime)).concat(" sec"), true);
+		return result;
+	}
+	
+	private long getDescriptorVersion(File file)
+	{
+		final Descriptor desc = DescriptorParser.getInstance().findDescriptorForFile(_chronicle, file.getName());
+		return (desc != null) ? desc.getVersion() : 0;
+	}
+	
+	private void record(File file, FileStamp source, DatCrypter crypter, File target) throws IOException
+	{
+		_manifest.put(file.getName(), new FileManifest.Entry(source, (crypter != null) ? crypter.getName() : "", getDescriptorVersion(file), false, target.getName(), FileStamp.of(target)));
+	}
+	
+	/**
+	 * Writes the manifest, dropping the files that are no longer in the directory.
+	 */
+	private void saveManifest(File[] files)
+	{
+		final Set<String> names = new HashSet<>();
+		for (File file : files)
+		{
+			names.add(file.getName());
+		}
+		_manifest.retainAll(names);
+		
+		try
+		{
+			_manifest.save();
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Cannot write the unpack manifest.", e);
+		}
+	}
+	
+	private static class UnpackResult
+	{
+		final List<String> messages = new ArrayList<>();
+		boolean unpacked;
+		boolean upToDate;
+		boolean failed;
 	}
 }
@@ -19,12 +19,13 @@ package org.l2jmobius.actions;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,7 +43,7 @@ public class OpenDat extends ActionTask
 {
 	private static final Logger LOGGER = Logger.getLogger(OpenDat.class.getName());
 	
-	private static final Map<String, DatCrypter> LAST_DAT_CRYPTERS = new HashMap<>();
+	private static final Map<String, DatCrypter> LAST_DAT_CRYPTERS = new ConcurrentHashMap<>();
 	
 	protected final String _structureChronicle;
 	protected final File _file;
@@ -100,22 +101,17 @@ public class OpenDat extends ActionTask
 			return null;
 		}
 		
-		final FileInputStream fis = new FileInputStream(file);
-		if (fis.available() < 28)
+		final String header = DatFile.readHeader(file);
+		if (header == null)
 		{
 			if (!mass)
 			{
 				L2ClientDat.addLogConsole("The file " + fileName + " is too small.", true);
 			}
-			fis.close();
 			return null;
 		}
 		
 		boolean crypt = true;
-		final byte[] head = new byte[28];
-		fis.read(head);
-		fis.close();
-		final String header = new String(head, StandardCharsets.UTF_16LE);
 		if (!header.matches("Lineage2Ver(\\d{3})"))
 		{
 			if (!mass)
@@ -200,7 +196,14 @@ public class OpenDat extends ActionTask
 	
 	public static String start(ActionTask actionTask, double weight, String structureChronicle, File file, boolean mass) throws Exception
 	{
-		final ByteBuffer buffer = decrypt(file, mass);
+		return start(actionTask, weight, structureChronicle, file, decrypt(file, mass), mass);
+	}
+	
+	/**
+	 * Reads a file that was already decrypted by {@link #decrypt(File, boolean)}.
+	 */
+	public static String start(ActionTask actionTask, double weight, String structureChronicle, File file, ByteBuffer buffer, boolean mass) throws Exception
+	{
 		if (buffer == null)
 		{
 			return "";
@@ -262,7 +265,10 @@ public class OpenDat extends ActionTask
 					GameDataName.getInstance().clear();
 				}
 				text = DescriptorReader.getInstance().parseData(actionTask, actionTask.getWeightValue(94.0, weight), file, crypter, desc, buffer, mass);
-				System.gc();
+				if (!mass)
+				{
+					System.gc();
+				}
 				
 				if (actionTask.isCancelled())
 				{
@@ -290,4 +296,21 @@ public class OpenDat extends ActionTask
 		
 		return text;
 	}
+	
+	/**
+	 * Reads a decrypted structured file for mass unpacking, writing its text while it is read instead of returning it.
+	 * @return the number of chars written, or -1 if the file cannot be parsed
+	 */
+	public static long unpack(ActionTask actionTask, String structureChronicle, File file, ByteBuffer buffer, Writer writer) throws Exception
+	{
+		final Descriptor desc = DescriptorParser.getInstance().findDescriptorForFile(structureChronicle, file.getName());
+		if (desc == null)
+		{
+			return -1;
+		}
+		
+		buffer.position(0);
+		DebugUtil.debug("Buffer size: " + buffer.limit());
+		return DescriptorReader.getInstance().parseData(actionTask, 0.0, file, getLastDatCrypter(file), desc, buffer, true, writer);
+	}
 }
@@ -17,18 +17,24 @@
 package org.l2jmobius.clientcryptor;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.CRC32;
 
 import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.clientcryptor.crypt.DatCrypterSession;
 import org.l2jmobius.config.ConfigDebug;
 
 public class DatFile extends File
 {
+	public static final int HEADER_SIZE = 28;
+	public static final int FOOTER_SIZE = 20;
+	
 	private ByteBuffer _buff;
 	private Footer _foot;
 	
@@ -39,12 +45,12 @@ public class DatFile extends File
 	
 	public static void encrypt(byte[] buff, String file, DatCrypter crypter) throws Exception
 	{
-		crypter.aquire();
+		final DatCrypterSession session = crypter.newSession();
 		final FileOutputStream os = new FileOutputStream(file, false);
 		final String header = "Lineage2Ver" + crypter.getCode();
 		os.write(header.getBytes(StandardCharsets.UTF_16LE));
-		crypter.update(buff);
-		final byte[] res = crypter.encryptResult().array();
+		session.update(buff);
+		final byte[] res = session.encryptResult().array();
 		os.write(res);
 		if (ConfigDebug.DAT_ADD_END_BYTES)
 		{
@@ -74,7 +80,6 @@ public class DatFile extends File
 			os.write(endBytes);
 		}
 		os.close();
-		crypter.release();
 	}
 	
 	public ByteBuffer getBuff()
@@ -82,67 +87,64 @@ public class DatFile extends File
 		return _buff;
 	}
 	
-	public void decrypt(DatCrypter crypter) throws Exception
+	/**
+	 * Reads the "Lineage2VerXXX" header of a file without reading the rest of it.
+	 * @param file the file to read
+	 * @return the header, or {@code null} if the file is too small to have one
+	 * @throws IOException if the file can not be read
+	 */
+	public static String readHeader(File file) throws IOException
 	{
-		loadInfo();
-		try (FileInputStream fis = new FileInputStream(this))
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
 		{
-			crypter.aquire();
-			try
-			{
-				fis.skip(28L);
-				final byte[] buff = new byte[crypter.getChunkSize(fis.available())];
-				int len = fis.available() - crypter.getSkipSize();
-				while (len > 0)
-				{
-					len -= fis.read(buff);
-					if (!crypter.update(buff))
-					{
-						_buff = null;
-						return;
-					}
-				}
-				_buff = crypter.decryptResult();
-			}
-			finally
+			if (channel.size() < HEADER_SIZE)
 			{
-				crypter.release();
+				return null;
 			}
+			
+			final ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(head, 0);
+			return new String(head.array(), 0, head.position(), StandardCharsets.UTF_16LE);
 		}
-		catch (Exception e)
+	}
+	
+	public void decrypt(DatCrypter crypter) throws Exception
+	{
+		final ByteBuffer data = read();
+		loadInfo(data);
+		
+		// The body is fed to the crypter from the file content, one reused chunk at a time.
+		final DatCrypterSession session = crypter.newSession();
+		data.position(HEADER_SIZE);
+		final byte[] buff = new byte[crypter.getChunkSize(data.remaining())];
+		int len = data.remaining() - crypter.getSkipSize();
+		while ((len > 0) && data.hasRemaining())
 		{
-			throw e;
+			final int read = Math.min(buff.length, data.remaining());
+			data.get(buff, 0, read);
+			len -= read;
+			if (!session.update(buff))
+			{
+				_buff = null;
+				return;
+			}
 		}
+		_buff = session.decryptResult();
 	}
 	
 	@SuppressWarnings("unused")
 	private boolean checkCrc32(DatCrypter crypter)
 	{
-		if (_foot == null)
+		try
 		{
-			try
-			{
-				loadInfo();
-			}
-			catch (IOException e)
+			final ByteBuffer data = read();
+			if (_foot == null)
 			{
-				return false;
+				loadInfo(data);
 			}
-		}
-		try (FileInputStream fis = new FileInputStream(this))
-		{
+			
 			final CRC32 chksum = new CRC32();
-			byte[] buff = new byte[1024];
-			int len = fis.available() - 20;
-			while (len > 0)
-			{
-				if (len < 1024)
-				{
-					buff = new byte[len];
-				}
-				len -= fis.read(buff);
-				chksum.update(buff);
-			}
+			chksum.update(data.limit(Math.max(0, data.capacity() - FOOTER_SIZE)));
 			return chksum.getValue() == _foot.crc32;
 		}
 		catch (Exception e2)
@@ -152,71 +154,82 @@ public class DatFile extends File
 		}
 	}
 	
-	private void loadInfo() throws IOException
+	/**
+	 * Reads the whole file with positional reads of a single channel.<br>
+	 * The content is copied to the heap rather than memory mapped, a mapping would keep the file from being rewritten in place on Windows until it is garbage collected.
+	 * @return the file content
+	 * @throws IOException if the file can not be read
+	 */
+	private ByteBuffer read() throws IOException
 	{
 		if (!exists() || !canRead())
 		{
 			throw new IOException("Can not read the dat file");
 		}
 		
-		final FileInputStream fis = new FileInputStream(this);
-		if (fis.available() < 28)
+		try (FileChannel channel = FileChannel.open(toPath(), StandardOpenOption.READ))
+		{
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("Can not read the dat file : too large");
+			}
+			
+			final ByteBuffer data = ByteBuffer.allocate((int) size);
+			while (data.hasRemaining())
+			{
+				if (channel.read(data, data.position()) < 0)
+				{
+					throw new IOException("Can not read the dat file : truncated");
+				}
+			}
+			data.flip();
+			data.order(ByteOrder.LITTLE_ENDIAN);
+			return data;
+		}
+	}
+	
+	private void loadInfo(ByteBuffer data) throws IOException
+	{
+		if (data.capacity() < HEADER_SIZE)
 		{
-			fis.close();
 			throw new IOException("Can not read the dat file : too small");
 		}
 		
-		final byte[] head = new byte[28];
-		fis.read(head);
+		final byte[] head = new byte[HEADER_SIZE];
+		data.get(0, head);
 		
 		final String header = new String(head, StandardCharsets.UTF_16LE);
 		if (!header.startsWith("Lineage2Ver"))
 		{
-			fis.close();
 			throw new IOException("Can not read the dat file : wrong header");
 		}
 		
 		if (header.endsWith("111") || header.endsWith("120") || header.endsWith("211") || header.endsWith("212"))
 		{
-			fis.close();
 			return;
 		}
 		
 		if (header.endsWith("311"))
 		{
-			fis.close();
 			return;
 		}
 		
 		if (!header.endsWith("411") && !header.endsWith("412") && !header.endsWith("413") && !header.endsWith("414"))
 		{
-			fis.close();
 			throw new IOException("Can not read the dat file : unknown header : '" + header + "'");
 		}
 		
-		if (fis.available() < 20)
+		if (data.capacity() < (HEADER_SIZE + FOOTER_SIZE))
 		{
-			fis.close();
 			throw new IOException("Can not read the dat file : too small");
 		}
 		
-		fis.skip(fis.available() - 20);
-		final byte[] foot = new byte[20];
-		fis.read(foot);
-		int min = foot[4] & 0xFF;
-		min += ((foot[5] << 8) & 0xFF00);
-		min += ((foot[6] << 16) & 0xFF0000);
-		min += ((foot[7] << 24) & 0xFF000000);
-		int maj = foot[8] & 0xFF;
-		maj += ((foot[9] << 8) & 0xFF00);
-		maj += ((foot[10] << 16) & 0xFF0000);
-		maj += ((foot[11] << 24) & 0xFF000000);
-		long crc = foot[12] & 0xFFL;
-		crc += ((foot[13] << 8) & 0xFF00L);
-		crc += ((foot[14] << 16) & 0xFF0000L);
-		crc += ((foot[15] << 24) & 0xFF000000L);
-		_foot = new Footer(crc, min, maj);
-		fis.close();
+		final int foot = data.capacity() - FOOTER_SIZE;
+		final int min = data.getInt(foot + 4);
+		final int maj = data.getInt(foot + 8);
+		final long crc = data.getInt(foot + 12) & 0xFFFFFFFFL;
+		_foot = new Footer(crc, maj, min);
 	}
 	
 	private static class Footer
@@ -33,21 +33,28 @@ public class BlowFishDatCrypter extends DatCrypter
 	}
 	
 	@Override
-	public ByteBuffer decryptResult()
+	public DatCrypterSession newSession()
 	{
-		return null;
-	}
-	
-	@Override
-	public ByteBuffer encryptResult()
-	{
-		return null;
-	}
-	
-	@Override
-	public boolean update(byte[] b)
-	{
-		return true;
+		return new DatCrypterSession()
+		{
+			@Override
+			public ByteBuffer decryptResult()
+			{
+				return null;
+			}
+			
+			@Override
+			public ByteBuffer encryptResult()
+			{
+				return null;
+			}
+			
+			@Override
+			public boolean update(byte[] b)
+			{
+				return true;
+			}
+		};
 	}
 	
 	@Override
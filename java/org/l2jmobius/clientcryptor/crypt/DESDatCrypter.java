@@ -18,6 +18,7 @@ package org.l2jmobius.clientcryptor.crypt;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -27,13 +28,36 @@ import javax.crypto.spec.DESKeySpec;
 public class DESDatCrypter extends DatCrypter
 {
 	private final boolean _encrypt;
-	private ByteArrayOutputStream _result;
-	private Cipher _cipher;
+	// Cipher instances are not thread safe, each thread initializes its own with the shared key.
+	private final ThreadLocal<Cipher> _cipher;
 	
 	public DESDatCrypter(String name, int code, String sKey, boolean deCrypt) throws Exception
 	{
 		super(name, code);
 		_encrypt = !deCrypt;
+		final SecretKey desKey = createKey(sKey, _encrypt);
+		final boolean encrypt = _encrypt;
+		_cipher = ThreadLocal.withInitial(() ->
+		{
+			try
+			{
+				return createCipher(desKey, encrypt);
+			}
+			catch (GeneralSecurityException e)
+			{
+				throw new IllegalStateException("DESDatCrypter: Can not initialize the cipher of " + name, e);
+			}
+		});
+	}
+	
+	/**
+	 * @param sKey the key text of cryptVersion.xml
+	 * @param encrypt the mode the key is used in
+	 * @return the key, checked against a cipher so a bad key fails when the keys are loaded rather than on the first file
+	 * @throws GeneralSecurityException if the key cannot be used
+	 */
+	private static SecretKey createKey(String sKey, boolean encrypt) throws GeneralSecurityException
+	{
 		final byte[] key = sKey.getBytes();
 		final byte[] keyXor = new byte[key.length];
 		for (int i = 0; i < key.length; ++i)
@@ -43,37 +67,21 @@ public class DESDatCrypter extends DatCrypter
 		final DESKeySpec dks = new DESKeySpec(keyXor);
 		final SecretKeyFactory skf = SecretKeyFactory.getInstance("DES");
 		final SecretKey desKey = skf.generateSecret(dks);
-		(_cipher = Cipher.getInstance("DES/ECB/NoPadding")).init(deCrypt ? 2 : 1, desKey);
+		createCipher(desKey, encrypt);
+		return desKey;
 	}
 	
-	@Override
-	public ByteBuffer decryptResult()
+	private static Cipher createCipher(SecretKey desKey, boolean encrypt) throws GeneralSecurityException
 	{
-		return ByteBuffer.wrap(_result.toByteArray());
+		final Cipher cipher = Cipher.getInstance("DES/ECB/NoPadding");
+		cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, desKey);
+		return cipher;
 	}
 	
 	@Override
-	public ByteBuffer encryptResult()
+	public DatCrypterSession newSession()
 	{
-		return ByteBuffer.wrap(_result.toByteArray());
-	}
-	
-	@Override
-	public boolean update(byte[] bArray) throws Exception
-	{
-		if (!_encrypt)
-		{
-			_result = new ByteArrayOutputStream(bArray.length);
-			final byte[] bytes = new byte[8];
-			int size;
-			for (int position = 0; position < bArray.length; position += size)
-			{
-				size = Math.min(8, bArray.length - position);
-				System.arraycopy(bArray, position, bytes, 0, size);
-				_result.write((size == 8) ? _cipher.doFinal(bytes) : bytes, 0, size);
-			}
-		}
-		return true;
+		return new DESSession(_cipher.get());
 	}
 	
 	@Override
@@ -93,4 +101,45 @@ public class DESDatCrypter extends DatCrypter
 	{
 		return _encrypt;
 	}
+	
+	private class DESSession extends DatCrypterSession
+	{
+		private final Cipher _sessionCipher;
+		private ByteArrayOutputStream _result;
+		
+		DESSession(Cipher cipher)
+		{
+			_sessionCipher = cipher;
+		}
+		
+		@Override
+		public ByteBuffer decryptResult()
+		{
+			return ByteBuffer.wrap(_result.toByteArray());
+		}
+		
+		@Override
+		public ByteBuffer encryptResult()
+		{
+			return ByteBuffer.wrap(_result.toByteArray());
+		}
+		
+		@Override
+		public boolean update(byte[] bArray) throws Exception
+		{
+			if (!_encrypt)
+			{
+				_result = new ByteArrayOutputStream(bArray.length);
+				final byte[] bytes = new byte[8];
+				int size;
+				for (int position = 0; position < bArray.length; position += size)
+				{
+					size = Math.min(8, bArray.length - position);
+					System.arraycopy(bArray, position, bytes, 0, size);
+					_result.write((size == 8) ? _sessionCipher.doFinal(bytes) : bytes, 0, size);
+				}
+			}
+			return true;
+		}
+	}
 }
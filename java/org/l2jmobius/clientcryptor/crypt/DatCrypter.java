@@ -16,11 +16,9 @@
  */
 package org.l2jmobius.clientcryptor.crypt;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class DatCrypter
 {
@@ -28,7 +26,6 @@ public abstract class DatCrypter
 	private final int _code;
 	private boolean _useStructure;
 	private final List<String> _fileEndNames = new ArrayList<>();
-	private final ReentrantLock _lock = new ReentrantLock(true);
 	
 	public DatCrypter(String name, int code)
 	{
@@ -36,31 +33,15 @@ public abstract class DatCrypter
 		_code = code;
 	}
 	
-	public abstract boolean update(byte[] p0) throws Exception;
-	
-	public abstract ByteBuffer decryptResult();
-	
-	public abstract ByteBuffer encryptResult();
+	/**
+	 * @return a new session holding the state of one encrypt or decrypt operation with this key
+	 */
+	public abstract DatCrypterSession newSession();
 	
 	public abstract int getChunkSize(int p0);
 	
 	public abstract int getSkipSize();
 	
-	public boolean checkAquired()
-	{
-		return _lock.isHeldByCurrentThread();
-	}
-	
-	public void aquire()
-	{
-		_lock.lock();
-	}
-	
-	public void release()
-	{
-		_lock.unlock();
-	}
-	
 	public abstract boolean isEncrypt();
 	
 	public String getName()
@@ -0,0 +1,32 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.clientcryptor.crypt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the mutable state of a single encrypt or decrypt operation.<br>
+ * Sessions are cheap, confined to the thread that created them and obtained from {@link DatCrypter#newSession()}, so different files can be processed concurrently with the same key.
+ */
+public abstract class DatCrypterSession
+{
+	public abstract boolean update(byte[] p0) throws Exception;
+	
+	public abstract ByteBuffer decryptResult();
+	
+	public abstract ByteBuffer encryptResult();
+}
@@ -16,23 +16,20 @@
  */
 package org.l2jmobius.clientcryptor.crypt;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.security.Key;
 import java.security.KeyFactory;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
 import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 
 import javax.crypto.Cipher;
 
@@ -43,194 +40,230 @@ public class RSADatCrypter extends DatCrypter
 {
 	private static final Logger LOGGER = Logger.getLogger(RSADatCrypter.class.getName());
 	
-	private Cipher _cipher;
-	private ByteArrayOutputStream _result;
-	private boolean _encrypt;
+	// Upper bound of the output buffer allocated upfront, a corrupted length prefix grows the buffer as data comes instead.
+	private static final int MAX_PRESIZE = 1 << 28;
+	
+	private final boolean _encrypt;
+	// Cipher instances are not thread safe, each thread initializes its own with the shared key.
+	private final ThreadLocal<Cipher> _cipher;
 	
 	public RSADatCrypter(String name, int code, String modulus, String exp, boolean deCrypt)
 	{
 		super(name, code);
-		_encrypt = false;
+		_encrypt = !deCrypt;
+		Key key = null;
 		try
 		{
-			_cipher = Cipher.getInstance("RSA/ECB/nopadding");
 			if (deCrypt)
 			{
-				final RSAPublicKeySpec keyspec = new RSAPublicKeySpec(new BigInteger(modulus, 16), new BigInteger(exp, 16));
-				final RSAPublicKey rsaKey = (RSAPublicKey) KeyFactory.getInstance("RSA").generatePublic(keyspec);
-				_cipher.init(2, rsaKey);
+				key = KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(new BigInteger(modulus, 16), new BigInteger(exp, 16)));
 			}
 			else
 			{
-				_encrypt = true;
-				final RSAPrivateKeySpec keyspec2 = new RSAPrivateKeySpec(new BigInteger(modulus, 16), new BigInteger(exp, 16));
-				final RSAPrivateKey rsaKey2 = (RSAPrivateKey) KeyFactory.getInstance("RSA").generatePrivate(keyspec2);
-				_cipher.init(1, rsaKey2);
+				key = KeyFactory.getInstance("RSA").generatePrivate(new RSAPrivateKeySpec(new BigInteger(modulus, 16), new BigInteger(exp, 16)));
 			}
 		}
 		catch (Exception e)
 		{
 			LOGGER.log(Level.WARNING, e.getMessage(), e);
 		}
+		
+		final Key cipherKey = key;
+		final boolean encrypt = _encrypt;
+		_cipher = ThreadLocal.withInitial(() -> createCipher(name, cipherKey, encrypt));
 	}
 	
-	@Override
-	public ByteBuffer decryptResult()
+	private static Cipher createCipher(String name, Key key, boolean encrypt)
 	{
-		if (!checkAquired())
-		{
-			throw new IllegalStateException("Do not even think about using a DatCrypter that you did not aquired");
-		}
-		
-		final byte[] compressed = _result.toByteArray();
-		int inflatedSize = compressed[0] & 0xFF;
-		inflatedSize += ((compressed[1] << 8) & 0xFF00);
-		inflatedSize += ((compressed[2] << 16) & 0xFF0000);
-		inflatedSize += ((compressed[3] << 24) & 0xFF000000);
-		final ByteArrayInputStream bais = new ByteArrayInputStream(compressed, 4, compressed.length - 4);
-		final InflaterInputStream iis = new InflaterInputStream(bais, new Inflater());
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
-		final byte[] inflatedResult = new byte[128];
 		try
 		{
-			int len;
-			while ((len = iis.read(inflatedResult)) > 0)
-			{
-				baos.write(inflatedResult, 0, len);
-			}
-		}
-		catch (IOException e)
-		{
-			LOGGER.log(Level.WARNING, e.getMessage(), e);
+			final Cipher cipher = Cipher.getInstance("RSA/ECB/nopadding");
+			cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, key);
+			return cipher;
 		}
-		
-		if (baos.size() != inflatedSize)
+		catch (Exception e)
 		{
-			LOGGER.log(Level.WARNING, ("[RSADatCrypter] Hum inflated result does not have the expected length..(" + baos.size() + "!=" + inflatedSize + ")"));
+			throw new IllegalStateException("RSADatCrypter: Can not initialize the cipher of " + name, e);
 		}
-		
-		return ByteBuffer.wrap(baos.toByteArray());
 	}
 	
 	@Override
-	public ByteBuffer encryptResult()
+	public DatCrypterSession newSession()
 	{
-		if (!checkAquired())
+		return new RSASession(_cipher.get());
+	}
+	
+	@Override
+	public boolean isEncrypt()
+	{
+		return _encrypt;
+	}
+	
+	@Override
+	public int getChunkSize(int available)
+	{
+		return 128;
+	}
+	
+	@Override
+	public int getSkipSize()
+	{
+		return 20;
+	}
+	
+	private class RSASession extends DatCrypterSession
+	{
+		private final Cipher _sessionCipher;
+		private ByteArrayOutputStream _result = new ByteArrayOutputStream(128);
+		private byte[] _block;
+		
+		// Decrypted blocks are inflated as they arrive, straight into a buffer sized from the 4 bytes length prefix.
+		private final Inflater _inflater;
+		private int _inflatedSize;
+		private int _prefixRead;
+		private byte[] _inflated;
+		private int _inflatedLength;
+		private boolean _corrupted;
+		
+		RSASession(Cipher cipher)
 		{
-			throw new IllegalStateException("Do not even think about using a DatCrypter that you did not aquired");
+			_sessionCipher = cipher;
+			_inflater = _encrypt ? null : new Inflater();
 		}
 		
-		final ByteArrayOutputStream result = new ByteArrayOutputStream();
-		try
+		private void inflate(byte[] chunk, int offset, int length)
 		{
-			final ByteArrayInputStream input = new ByteArrayInputStream(_result.toByteArray());
-			final byte[] buffer = new byte[124];
-			final byte[] block = new byte[128];
-			int len;
-			while ((len = input.read(buffer)) > 0)
+			while ((_prefixRead < 4) && (length > 0))
 			{
-				Arrays.fill(block, (byte) 0);
-				block[0] = (byte) ((len >> 24) & 0xFF);
-				block[1] = (byte) ((len >> 16) & 0xFF);
-				block[2] = (byte) ((len >> 8) & 0xFF);
-				block[3] = (byte) (len & 0xFF);
-				System.arraycopy(buffer, 0, block, 128 - len - ((124 - len) % 4), len);
-				result.write(_cipher.doFinal(block));
+				_inflatedSize |= (chunk[offset++] & 0xFF) << (8 * _prefixRead++);
+				length--;
+				if (_prefixRead == 4)
+				{
+					_inflated = new byte[Math.max(0, Math.min(_inflatedSize, MAX_PRESIZE))];
+				}
+			}
+			
+			if ((length == 0) || _corrupted || _inflater.finished())
+			{
+				return;
+			}
+			
+			_inflater.setInput(chunk, offset, length);
+			try
+			{
+				while (!_inflater.needsInput() && !_inflater.finished())
+				{
+					if (_inflatedLength == _inflated.length)
+					{
+						_inflated = Arrays.copyOf(_inflated, Math.max(128, _inflated.length * 2));
+					}
+					
+					final int len = _inflater.inflate(_inflated, _inflatedLength, _inflated.length - _inflatedLength);
+					if ((len == 0) && _inflater.needsDictionary())
+					{
+						throw new DataFormatException("Preset dictionary is not supported");
+					}
+					_inflatedLength += len;
+				}
+			}
+			catch (DataFormatException e)
+			{
+				_corrupted = true;
+				LOGGER.log(Level.WARNING, e.getMessage(), e);
 			}
 		}
-		catch (Exception e)
+		
+		@Override
+		public ByteBuffer decryptResult()
 		{
-			LOGGER.log(Level.WARNING, e.getMessage(), e);
+			_inflater.end();
+			if (_inflated == null)
+			{
+				throw new IllegalStateException("[RSADatCrypter] No inflated length in the decrypted data.");
+			}
+			
+			if (_inflatedLength != _inflatedSize)
+			{
+				LOGGER.log(Level.WARNING, ("[RSADatCrypter] Hum inflated result does not have the expected length..(" + _inflatedLength + "!=" + _inflatedSize + ")"));
+			}
+			
+			return ByteBuffer.wrap(_inflatedLength == _inflated.length ? _inflated : Arrays.copyOf(_inflated, _inflatedLength));
 		}
 		
-		return ByteBuffer.wrap(result.toByteArray());
-	}
-	
-	@Override
-	public boolean update(byte[] b) throws Exception
-	{
-		if (!checkAquired())
+		@Override
+		public ByteBuffer encryptResult()
 		{
-			throw new IllegalStateException("Do not even think about using a DatCrypter that you did not aquired");
+			final byte[] input = _result.toByteArray();
+			final int blockSize = _sessionCipher.getOutputSize(128);
+			final byte[] result = new byte[((input.length + 123) / 124) * blockSize];
+			int resultLength = 0;
+			try
+			{
+				final byte[] block = new byte[128];
+				for (int position = 0; position < input.length; position += 124)
+				{
+					final int len = Math.min(124, input.length - position);
+					Arrays.fill(block, (byte) 0);
+					block[0] = (byte) ((len >> 24) & 0xFF);
+					block[1] = (byte) ((len >> 16) & 0xFF);
+					block[2] = (byte) ((len >> 8) & 0xFF);
+					block[3] = (byte) (len & 0xFF);
+					System.arraycopy(input, position, block, 128 - len - ((124 - len) % 4), len);
+					resultLength += _sessionCipher.doFinal(block, 0, 128, result, resultLength);
+				}
+			}
+			catch (Exception e)
+			{
+				LOGGER.log(Level.WARNING, e.getMessage(), e);
+			}
+			
+			return ByteBuffer.wrap(resultLength == result.length ? result : Arrays.copyOf(result, resultLength));
 		}
 		
-		Exception exception = null;
-		try
+		@Override
+		public boolean update(byte[] b) throws Exception
 		{
 			if (!_encrypt)
 			{
-				final byte[] chunk = _cipher.doFinal(b);
+				// The block is decrypted into the same reused buffer, the inflater consumes it before the next update.
+				if (_block == null)
+				{
+					_block = new byte[_sessionCipher.getOutputSize(b.length)];
+				}
+				
+				final byte[] chunk = _block;
+				_sessionCipher.doFinal(b, 0, b.length, chunk, 0);
 				int size = chunk[3];
 				size += ((chunk[2] << 8) & 0xFF00);
 				size += ((chunk[1] << 16) & 0xFF0000);
 				size += ((chunk[0] << 24) & 0xFF000000);
+				final int blockSize = size;
 				final int pad = (-size & 0x1) + (-size & 0x2);
-				DebugUtil.debug("Size:" + size + " pad:" + pad);
+				DebugUtil.debug(() -> "Size:" + blockSize + " pad:" + pad);
 				if (size > 128)
 				{
 					return false;
 				}
 				
-				_result.write(chunk, 128 - size - pad, size);
-				DebugUtil.debug("--- BLOCK:\n" + Util.printData(chunk) + "-----");
+				inflate(chunk, 128 - size - pad, size);
+				DebugUtil.debug(() -> "--- BLOCK:\n" + Util.printData(chunk) + "-----");
 			}
 			else
 			{
-				try
-				{
-					final ByteArrayOutputStream s = new ByteArrayOutputStream(b.length);
-					final DeflaterOutputStream dos = new DeflaterOutputStream(s, new Deflater());
-					dos.write(b);
-					dos.finish();
-					dos.close();
-					final int l = b.length;
-					(_result = new ByteArrayOutputStream(10 + s.toByteArray().length)).write(l & 0xFF);
-					_result.write((l & 0xFF00) >> 8);
-					_result.write((l & 0xFF0000) >> 16);
-					_result.write((l & 0xFF000000) >> 24);
-					_result.write(s.toByteArray());
-				}
-				catch (IOException e)
-				{
-					exception = e;
-				}
+				final ByteArrayOutputStream s = new ByteArrayOutputStream(b.length);
+				final DeflaterOutputStream dos = new DeflaterOutputStream(s, new Deflater());
+				dos.write(b);
+				dos.finish();
+				dos.close();
+				final int l = b.length;
+				(_result = new ByteArrayOutputStream(10 + s.toByteArray().length)).write(l & 0xFF);
+				_result.write((l & 0xFF00) >> 8);
+				_result.write((l & 0xFF0000) >> 16);
+				_result.write((l & 0xFF000000) >> 24);
+				_result.write(s.toByteArray());
 			}
+			
+			return true;
 		}
-		catch (Exception e2)
-		{
-			exception = e2;
-		}
-		
-		if (exception != null)
-		{
-			throw exception;
-		}
-		
-		return true;
-	}
-	
-	@Override
-	public void aquire()
-	{
-		super.aquire();
-		_result = new ByteArrayOutputStream(128);
-	}
-	
-	@Override
-	public boolean isEncrypt()
-	{
-		return _encrypt;
-	}
-	
-	@Override
-	public int getChunkSize(int available)
-	{
-		return 128;
-	}
-	
-	@Override
-	public int getSkipSize()
-	{
-		return 20;
 	}
 }
@@ -23,7 +23,6 @@ public class XorDatCrypter extends DatCrypter
 {
 	private final boolean _encrypt;
 	private final int _xorKey;
-	private ByteArrayOutputStream _result;
 	
 	public XorDatCrypter(String name, int code, int key, boolean deCrypt)
 	{
@@ -33,25 +32,9 @@ public class XorDatCrypter extends DatCrypter
 	}
 	
 	@Override
-	public ByteBuffer decryptResult()
+	public DatCrypterSession newSession()
 	{
-		return ByteBuffer.wrap(_result.toByteArray());
-	}
-	
-	@Override
-	public ByteBuffer encryptResult()
-	{
-		return ByteBuffer.wrap(_result.toByteArray());
-	}
-	
-	@Override
-	public boolean update(byte[] bArray)
-	{
-		for (byte b : bArray)
-		{
-			_result.write(b ^ _xorKey);
-		}
-		return true;
+		return new XorSession();
 	}
 	
 	@Override
@@ -72,10 +55,30 @@ public class XorDatCrypter extends DatCrypter
 		return _encrypt;
 	}
 	
-	@Override
-	public void aquire()
+	private class XorSession extends DatCrypterSession
 	{
-		super.aquire();
-		_result = new ByteArrayOutputStream(128);
+		private final ByteArrayOutputStream _result = new ByteArrayOutputStream(128);
+		
+		@Override
+		public ByteBuffer decryptResult()
+		{
+			return ByteBuffer.wrap(_result.toByteArray());
+		}
+		
+		@Override
+		public ByteBuffer encryptResult()
+		{
+			return ByteBuffer.wrap(_result.toByteArray());
+		}
+		
+		@Override
+		public boolean update(byte[] bArray)
+		{
+			for (byte b : bArray)
+			{
+				_result.write(b ^ _xorKey);
+			}
+			return true;
+		}
 	}
 }
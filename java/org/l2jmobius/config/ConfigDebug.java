@@ -32,6 +32,7 @@ public class ConfigDebug
 	public static boolean DAT_REPLACEMENT_ENUMS;
 	public static boolean ENCRYPT;
 	public static boolean SAVE_DECODE;
+	public static int MASS_THREADS;
 	
 	public static void load()
 	{
@@ -46,6 +47,7 @@ public class ConfigDebug
 			DAT_REPLACEMENT_ENUMS = parser.getBoolean("DAT_REPLACEMENT_ENUMS", true);
 			ENCRYPT = parser.getBoolean("ENCRYPT", true);
 			SAVE_DECODE = parser.getBoolean("SAVE_DECODE", false);
+			MASS_THREADS = parser.getInt("MASS_THREADS", 0);
 		}
 		catch (Exception e)
 		{
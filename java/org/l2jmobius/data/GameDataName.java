@@ -18,17 +18,15 @@ package org.l2jmobius.data;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.l2jmobius.L2ClientDat;
 import org.l2jmobius.clientcryptor.DatFile;
@@ -36,8 +34,9 @@ import org.l2jmobius.clientcryptor.crypt.DatCrypter;
 import org.l2jmobius.config.ConfigDebug;
 import org.l2jmobius.util.ByteReader;
 import org.l2jmobius.util.ByteWriter;
-import org.l2jmobius.util.Util;
+import org.l2jmobius.util.FileManifest.FileStamp;
 import org.l2jmobius.xml.ParamNode;
+import org.l2jmobius.xml.exceptions.UnknownNameException;
 
 public class GameDataName
 {
@@ -58,10 +57,13 @@ public class GameDataName
 		0
 	};
 	
+	private static final Pattern STR_ID_PATTERN = Pattern.compile("<StrID:(\\d+)>");
+	
+	/** Held to load the table or add names, lookups do not take it. */
 	private final Lock _lock = new ReentrantLock();
-	private final Map<Integer, String> _names = new TreeMap<>();
-	private final Map<String, Integer> _nameHash = new HashMap<>();
-	private File _currDataNameFile = null;
+	private final NameTable _names = new NameTable();
+	private volatile File _currDataNameFile = null;
+	private volatile boolean _appendLocked = false;
 	
 	public GameDataName()
 	{
@@ -73,7 +75,6 @@ public class GameDataName
 		try
 		{
 			_names.clear();
-			_nameHash.clear();
 			if (decCrypter.isEncrypt())
 			{
 				final File file = new File(currentFile.getParent(), "L2GameDataName.txt");
@@ -84,22 +85,21 @@ public class GameDataName
 				
 				if (file.exists())
 				{
-					final List<String> list = Files.readAllLines(file.toPath());
-					for (int i = 0; i < list.size(); ++i)
+					final File cache = GameDataNameCache.getCacheFile(file, "txt");
+					final long checksum = FileStamp.checksum(file);
+					final long length = file.length();
+					if (!readCache(cache, checksum, length))
 					{
-						final String str = list.get(i);
-						final Map<String, String> map = Util.stringToMap(str);
-						String name = map.get("name");
-						name = name.replaceAll("^\\[(.*?)]$", "$1");
-						_names.put(i, name);
-						if (!_nameHash.containsKey(name.toLowerCase()))
-						{
-							_nameHash.put(name.toLowerCase(), i);
-						}
-						else
+						final List<String> list = Files.readAllLines(file.toPath());
+						for (int i = 0; i < list.size(); ++i)
 						{
-							L2ClientDat.addLogConsole("GameDataName: Contains dublicate value: [" + name + "] in index[" + i + "]!", true);
+							final String name = parseName(list.get(i));
+							if (!_names.add(name))
+							{
+								L2ClientDat.addLogConsole("GameDataName: Contains dublicate value: [" + name + "] in index[" + i + "]!", true);
+							}
 						}
+						GameDataNameCache.write(cache, checksum, length, _names);
 					}
 					L2ClientDat.addLogConsole("GameDataName: Load " + _names.size() + " count.", true);
 				}
@@ -119,18 +119,13 @@ public class GameDataName
 				
 				if (file.exists())
 				{
-					final FileInputStream fis = new FileInputStream(file);
-					if (fis.available() < 28)
+					final String header = DatFile.readHeader(file);
+					if (header == null)
 					{
 						L2ClientDat.addLogConsole(file.getName() + " The file is too small.", true);
-						fis.close();
 						return;
 					}
 					
-					final byte[] head = new byte[28];
-					fis.read(head);
-					fis.close();
-					final String header = new String(head, StandardCharsets.UTF_16LE);
 					if (!header.startsWith("Lineage2Ver"))
 					{
 						L2ClientDat.addLogConsole("GameDataName: File " + file.getName() + " not encrypted. Skip decrypt.", true);
@@ -143,22 +138,24 @@ public class GameDataName
 						return;
 					}
 					
-					L2ClientDat.addLogConsole("Unpacking [" + file.getName() + "]", true);
-					final DatFile dat = new DatFile(file.getAbsolutePath());
-					dat.decrypt(decCrypter);
-					final ByteBuffer buff = dat.getBuff();
-					for (int size = ByteReader.readUInt(buff), j = 0; j < size; ++j)
+					final File cache = GameDataNameCache.getCacheFile(file, decCrypter.getName());
+					final long checksum = FileStamp.checksum(file);
+					final long length = file.length();
+					if (!readCache(cache, checksum, length))
 					{
-						final String name2 = ByteReader.readUtfString(buff, false);
-						_names.put(j, name2);
-						if (!_nameHash.containsKey(name2.toLowerCase()))
+						L2ClientDat.addLogConsole("Unpacking [" + file.getName() + "]", true);
+						final DatFile dat = new DatFile(file.getAbsolutePath());
+						dat.decrypt(decCrypter);
+						final ByteBuffer buff = dat.getBuff().order(ByteOrder.LITTLE_ENDIAN);
+						for (int size = ByteReader.readUInt(buff), j = 0; j < size; ++j)
 						{
-							_nameHash.put(name2.toLowerCase(), j);
-						}
-						else
-						{
-							L2ClientDat.addLogConsole("GameDataName: Contains dublicate value: [" + name2 + "] in index[" + j + "]!", true);
+							final String name2 = ByteReader.readUtfString(buff, false);
+							if (!_names.add(name2))
+							{
+								L2ClientDat.addLogConsole("GameDataName: Contains dublicate value: [" + name2 + "] in index[" + j + "]!", true);
+							}
 						}
+						GameDataNameCache.write(cache, checksum, length, _names);
 					}
 					L2ClientDat.addLogConsole("GameDataName: Load " + _names.size() + " count.", true);
 				}
@@ -175,8 +172,73 @@ public class GameDataName
 		}
 	}
 	
-	public String getString(File currentFile, DatCrypter crypter, int index, boolean mass) throws Exception
+	/**
+	 * Fills the table from a cache entry, reporting its duplicate names as a parse would.
+	 * @param cache the cache file
+	 * @param checksum the CRC32 of the source
+	 * @param length the size of the source
+	 * @return {@code false} if there is no valid entry
+	 */
+	private boolean readCache(File cache, long checksum, long length)
+	{
+		if (!GameDataNameCache.read(cache, checksum, length, _names))
+		{
+			return false;
+		}
+		
+		for (int i = 0; i < _names.size(); ++i)
+		{
+			final String name = _names.get(i);
+			if (_names.indexOf(name) != i)
+			{
+				L2ClientDat.addLogConsole("GameDataName: Contains dublicate value: " + name + " in index[" + i + "]!", true);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads the last {@code name} value of a L2GameDataName.txt line, as {@link org.l2jmobius.util.Util#stringToMap} would, without its brackets.
+	 * @param line the line
+	 * @return the name
+	 */
+	private static String parseName(String line)
+	{
+		String name = null;
+		for (int start = 0, end; start <= line.length(); start = end + 1)
+		{
+			end = line.indexOf('\t', start);
+			if (end < 0)
+			{
+				end = line.length();
+			}
+			
+			if (line.startsWith("name=", start))
+			{
+				name = line.substring(start + 5, end);
+			}
+		}
+		
+		if ((name != null) && (name.length() >= 2) && (name.charAt(0) == '[') && (name.charAt(name.length() - 1) == ']'))
+		{
+			return name.substring(1, name.length() - 1);
+		}
+		return name;
+	}
+	
+	/**
+	 * Loads the table next to a file, unless a file already caused it to be loaded.<br>
+	 * Used when the files that would have loaded it were skipped, so {@link #checkAndUpdate} still writes it.
+	 * @param currentFile a file of the directory holding the table
+	 * @param crypter the crypter of the files
+	 */
+	public void ensureLoaded(File currentFile, DatCrypter crypter) throws Exception
 	{
+		if (_currDataNameFile != null)
+		{
+			return;
+		}
+		
 		_lock.lock();
 		try
 		{
@@ -184,25 +246,35 @@ public class GameDataName
 			{
 				load(currentFile, crypter);
 			}
-			
-			if (!mass && !_names.containsKey(index) && _currDataNameFile.exists())
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+	
+	public String getString(File currentFile, DatCrypter crypter, int index, boolean mass) throws Exception
+	{
+		ensureLoaded(currentFile, crypter);
+		
+		final String val = _names.get(index);
+		if (val == null)
+		{
+			final File dataNameFile = _currDataNameFile;
+			if (!mass && (dataNameFile != null) && dataNameFile.exists())
 			{
 				L2ClientDat.addLogConsole("GameDataName: Not found string for index: " + index, true);
 				return "[None]";
 			}
-			
-			final String val = _names.getOrDefault(index, "<StrID:" + index + ">");
-			if (!mass && val.isEmpty())
-			{
-				L2ClientDat.addLogConsole("GameDataName: String name Empty!!! Index: " + index + ", file: " + currentFile.getName(), true);
-			}
-			
-			return "[" + val + "]";
+			return "[<StrID:" + index + ">]";
 		}
-		finally
+		
+		if (!mass && (val.length() == 2))
 		{
-			_lock.unlock();
+			L2ClientDat.addLogConsole("GameDataName: String name Empty!!! Index: " + index + ", file: " + currentFile.getName(), true);
 		}
+		
+		return val;
 	}
 	
 	public int getId(File currentFile, DatCrypter crypter, ParamNode node, String str, boolean mass) throws Exception
@@ -212,8 +284,7 @@ public class GameDataName
 			L2ClientDat.addLogConsole("GameDataName: String name not brackets!!! file: " + currentFile.getName() + " str: " + str + " node: " + node, true);
 		}
 		
-		str = str.substring(1, str.length() - 1);
-		if (str.isEmpty())
+		if (str.length() <= 2)
 		{
 			if (!mass)
 			{
@@ -222,28 +293,85 @@ public class GameDataName
 			return -1;
 		}
 		
+		ensureLoaded(currentFile, crypter);
+		
+		final int index = _names.indexOf(str);
+		if (index >= 0)
+		{
+			return index;
+		}
+		
+		final Matcher matcher = STR_ID_PATTERN.matcher(str).region(1, str.length() - 1);
+		if (matcher.matches())
+		{
+			return Integer.parseInt(matcher.group(1));
+		}
+		
+		final String name = str.substring(1, str.length() - 1);
+		if (_appendLocked)
+		{
+			throw new UnknownNameException("GameDataName: New name [" + name + "] while appending is locked.");
+		}
+		
 		_lock.lock();
 		try
 		{
-			if (_currDataNameFile == null)
-			{
-				load(currentFile, crypter);
-			}
-			
-			if (_nameHash.containsKey(str.toLowerCase()))
+			// Another thread may have added it meanwhile.
+			final int added = _names.indexOf(str);
+			if (added >= 0)
 			{
-				return _nameHash.get(str.toLowerCase());
+				return added;
 			}
 			
-			if (str.matches("^<StrID:(\\d+)>$"))
+			_names.add(name);
+			return _names.size() - 1;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+	
+	/**
+	 * Allows or forbids appending unknown names in {@link #getId}.<br>
+	 * Concurrent packers lock the table so that new names, whose index depends on the packing order, are only added by a sequential pass.
+	 * @param locked {@code true} to throw {@link UnknownNameException} for unknown names instead of appending them
+	 */
+	public void setAppendLocked(boolean locked)
+	{
+		_appendLocked = locked;
+	}
+	
+	/**
+	 * @return the number of names in the table
+	 */
+	public int size()
+	{
+		return _names.size();
+	}
+	
+	/**
+	 * @return a copy of the names, in index order
+	 */
+	public List<String> getNames()
+	{
+		return _names.getNames();
+	}
+	
+	/**
+	 * Adds names at the end of the table, as {@link #getId} does for unknown names.<br>
+	 * Used to replay the names of a file that is not packed again.
+	 * @param names the names to add, in order
+	 */
+	public void append(List<String> names)
+	{
+		_lock.lock();
+		try
+		{
+			for (String name : names)
 			{
-				return Integer.parseInt(str.replaceAll("^<StrID:(\\d+)>$", "$1"));
+				_names.add(name);
 			}
-			
-			final int newIndex = _names.size();
-			_names.put(newIndex, str);
-			_nameHash.put(str.toLowerCase(), newIndex);
-			return newIndex;
 		}
 		finally
 		{
@@ -256,11 +384,11 @@ public class GameDataName
 		_lock.lock();
 		try
 		{
-			if (!_nameHash.isEmpty())
+			if (_names.size() > 0)
 			{
 				final ByteArrayOutputStream baos = new ByteArrayOutputStream();
 				baos.write(ByteWriter.writeInt(_names.size()));
-				for (String key : _names.values())
+				for (String key : _names.getNames())
 				{
 					baos.write(ByteWriter.writeUtfString(key, false));
 				}
@@ -297,7 +425,6 @@ public class GameDataName
 		try
 		{
 			_names.clear();
-			_nameHash.clear();
 			_currDataNameFile = null;
 		}
 		finally
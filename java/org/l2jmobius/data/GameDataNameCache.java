@@ -0,0 +1,182 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Binary copy of loaded L2GameDataName tables, so a table is not parsed or decrypted again while its source does not change.<br>
+ * Entries are named after the path of the source and what it is read as, so each source has a single entry, overwritten when the source changes.<br>
+ * An entry holds the CRC32 and size of its source, the offsets of the names, the names as one UTF-16 blob and the reverse index of {@link NameTable}. It is read into memory on load, so it is never held open.
+ */
+final class GameDataNameCache
+{
+	private static final Logger LOGGER = Logger.getLogger(GameDataNameCache.class.getName());
+	
+	private static final File CACHE_DIR = new File("./cache/gamedataname/");
+	private static final int MAGIC = 0x4C32474E; // L2GN
+	private static final int VERSION = 2;
+	
+	private GameDataNameCache()
+	{
+	}
+	
+	/**
+	 * @param source the L2GameDataName file
+	 * @param kind what the source is read as, such as {@code txt} or the name of the crypter
+	 * @return the cache file of the source
+	 * @throws IOException if the path of the source cannot be resolved
+	 */
+	static File getCacheFile(File source, String kind) throws IOException
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(source.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+		return new File(CACHE_DIR, kind.replaceAll("[^\\w.-]", "_") + "_" + Long.toHexString(crc.getValue()) + ".bin");
+	}
+	
+	/**
+	 * Fills a table from a cache file.
+	 * @param cache the cache file
+	 * @param checksum the CRC32 of the source
+	 * @param length the size of the source
+	 * @param table the table to fill
+	 * @return {@code false} if there is no valid entry for this content of the source, the table is then left as it was
+	 */
+	static boolean read(File cache, long checksum, long length, NameTable table)
+	{
+		if (!cache.isFile())
+		{
+			return false;
+		}
+		
+		try
+		{
+			final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cache.toPath()));
+			if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION) || (buffer.getLong() != checksum) || (buffer.getLong() != length))
+			{
+				return false;
+			}
+			
+			final int size = buffer.getInt();
+			final int[] offsets = new int[size + 1];
+			buffer.asIntBuffer().get(offsets);
+			buffer.position(buffer.position() + (offsets.length * Integer.BYTES));
+			
+			final char[] chars = new char[offsets[size]];
+			buffer.asCharBuffer().get(chars);
+			buffer.position(buffer.position() + (chars.length * Character.BYTES));
+			
+			final int[] slots = new int[buffer.getInt()];
+			buffer.asIntBuffer().get(slots);
+			if ((Integer.bitCount(slots.length) != 1) || (slots.length < (size * 2)))
+			{
+				return false;
+			}
+			
+			final String[] names = new String[size];
+			for (int i = 0; i < size; ++i)
+			{
+				names[i] = new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+			}
+			
+			for (int value : slots)
+			{
+				if ((value < 0) || (value > size))
+				{
+					return false;
+				}
+			}
+			
+			table.set(names, slots);
+			return true;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOGGER.log(Level.WARNING, "Ignoring broken name cache " + cache.getPath(), e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Stores a loaded table, replacing the entry of a previous content of the source.
+	 * @param cache the cache file
+	 * @param checksum the CRC32 of the source
+	 * @param length the size of the source
+	 * @param table the table
+	 */
+	static void write(File cache, long checksum, long length, NameTable table)
+	{
+		final File temp = new File(cache.getPath() + ".tmp");
+		try
+		{
+			Files.createDirectories(CACHE_DIR.toPath());
+			final int size = table.size();
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(checksum);
+				out.writeLong(length);
+				out.writeInt(size);
+				int offset = 0;
+				out.writeInt(offset);
+				for (int i = 0; i < size; ++i)
+				{
+					offset += table.get(i).length();
+					out.writeInt(offset);
+				}
+				
+				for (int i = 0; i < size; ++i)
+				{
+					out.writeChars(table.get(i));
+				}
+				
+				final int[] slots = table.getSlots();
+				final ByteBuffer buffer = ByteBuffer.allocate(slots.length * Integer.BYTES);
+				buffer.asIntBuffer().put(slots);
+				out.writeInt(slots.length);
+				out.write(buffer.array());
+			}
+			
+			try
+			{
+				Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not write name cache " + cache.getPath() + ": " + e.getMessage());
+			temp.delete();
+		}
+	}
+}
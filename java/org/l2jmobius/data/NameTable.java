@@ -0,0 +1,236 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The names of L2GameDataName by index, with a case insensitive reverse index.<br>
+ * Names are kept in a growable array in the bracketed form they are shown with, so a lookup by index allocates nothing.<br>
+ * The reverse index is an open addressing table of {@code index + 1} values, hashed and compared by case folded chars, so no lower cased copy of the names is kept.<br>
+ * Reads need no lock: each {@link #add} publishes a new {@link State} holding the size, readers ignore anything past the size of the state they read. Writers must hold a common lock.
+ */
+final class NameTable
+{
+	private static final int MIN_CAPACITY = 16;
+	
+	private volatile State _state = new State(new String[MIN_CAPACITY], 0, new int[MIN_CAPACITY * 2]);
+	
+	int size()
+	{
+		return _state.size;
+	}
+	
+	/**
+	 * @param index the index
+	 * @return the bracketed name, {@code null} if there is none
+	 */
+	String get(int index)
+	{
+		final State state = _state;
+		return ((index >= 0) && (index < state.size)) ? state.names[index] : null;
+	}
+	
+	/**
+	 * @param str a bracketed name
+	 * @return the index of the first name equal ignoring case to the text within the brackets, -1 if there is none
+	 */
+	int indexOf(String str)
+	{
+		return indexOf(_state, str);
+	}
+	
+	/**
+	 * Adds a name at the end of the table.
+	 * @param name the name, without brackets
+	 * @return {@code false} if the table already had an equal name, which keeps the reverse index
+	 */
+	boolean add(String name)
+	{
+		final State state = _state;
+		final String str = "[" + name + "]";
+		final boolean first = indexOf(state, str) < 0;
+		final int size = state.size + 1;
+		
+		// Slots and names past the published size may be written in place, readers of older states skip them.
+		final String[] names = (state.size == state.names.length) ? Arrays.copyOf(state.names, Math.max(MIN_CAPACITY, state.size * 2)) : state.names;
+		names[state.size] = str;
+		int[] slots = state.slots;
+		if (first)
+		{
+			if ((size * 2) > slots.length)
+			{
+				slots = rehash(names, size, slots.length * 2);
+			}
+			else
+			{
+				insert(names, state.size, slots);
+			}
+		}
+		
+		_state = new State(names, size, slots);
+		return first;
+	}
+	
+	/**
+	 * @return the names without brackets, in index order
+	 */
+	List<String> getNames()
+	{
+		final State state = _state;
+		final List<String> names = new ArrayList<>(state.size);
+		for (int i = 0; i < state.size; ++i)
+		{
+			names.add(state.names[i].substring(1, state.names[i].length() - 1));
+		}
+		return names;
+	}
+	
+	/**
+	 * Replaces the content with names and a reverse index saved from {@link #get} and {@link #getSlots}.
+	 * @param names the bracketed names
+	 * @param slots the reverse index
+	 */
+	void set(String[] names, int[] slots)
+	{
+		_state = new State(names, names.length, slots);
+	}
+	
+	/**
+	 * @return a copy of the reverse index, to be saved along with the names
+	 */
+	int[] getSlots()
+	{
+		final State state = _state;
+		return Arrays.copyOf(state.slots, state.slots.length);
+	}
+	
+	void clear()
+	{
+		_state = new State(new String[MIN_CAPACITY], 0, new int[MIN_CAPACITY * 2]);
+	}
+	
+	private static int indexOf(State state, String str)
+	{
+		return indexOf(state.names, state.size, state.slots, str);
+	}
+	
+	private static int indexOf(String[] names, int size, int[] slots, String str)
+	{
+		final int length = str.length() - 2;
+		final int mask = slots.length - 1;
+		for (int slot = hash(str, 1, length) & mask;; slot = (slot + 1) & mask)
+		{
+			final int value = slots[slot];
+			// A slot filled after the state was published was empty for it, an equal name of the state would sit before it.
+			if ((value == 0) || (value > size))
+			{
+				return -1;
+			}
+			
+			if (equalsIgnoreCase(names[value - 1], str, length))
+			{
+				return value - 1;
+			}
+		}
+	}
+	
+	private static int[] rehash(String[] names, int size, int capacity)
+	{
+		final int[] slots = new int[capacity];
+		for (int i = 0; i < size; ++i)
+		{
+			// Only the first of equal names is indexed.
+			if (indexOf(names, i, slots, names[i]) < 0)
+			{
+				insert(names, i, slots);
+			}
+		}
+		return slots;
+	}
+	
+	private static void insert(String[] names, int index, int[] slots)
+	{
+		final String str = names[index];
+		final int mask = slots.length - 1;
+		int slot = hash(str, 1, str.length() - 2) & mask;
+		while (slots[slot] != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = index + 1;
+	}
+	
+	private static int hash(String str, int offset, int length)
+	{
+		int hash = 0;
+		for (int i = offset; i < (offset + length); ++i)
+		{
+			hash = (31 * hash) + fold(str.charAt(i));
+		}
+		// Spreads the high bits, the table only uses the low ones.
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * Compares the text within the brackets of two bracketed names.
+	 */
+	private static boolean equalsIgnoreCase(String a, String b, int length)
+	{
+		if ((a.length() - 2) != length)
+		{
+			return false;
+		}
+		
+		for (int i = 1; i <= length; ++i)
+		{
+			final char c1 = a.charAt(i);
+			final char c2 = b.charAt(i);
+			if ((c1 != c2) && (fold(c1) != fold(c2)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static char fold(char c)
+	{
+		if (c < 128)
+		{
+			return ((c >= 'A') && (c <= 'Z')) ? (char) (c + 32) : c;
+		}
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+	
+	private static class State
+	{
+		final String[] names;
+		/** Index + 1 of the first name with each folded value, 0 for empty slots. Kept at most half full. */
+		final int[] slots;
+		final int size;
+		
+		State(String[] names, int size, int[] slots)
+		{
+			this.names = names;
+			this.size = size;
+			this.slots = slots;
+		}
+	}
+}
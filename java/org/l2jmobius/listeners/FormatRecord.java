@@ -0,0 +1,171 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.listeners;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One record line of a text: a {@code skill_begin} tag, tab separated {@code key=value} params and a {@code skill_end} tag.<br>
+ * The params are read from the line the first time they are used, as {@link org.l2jmobius.util.Util#stringToMap} would read them, so a record that is only held or passed along costs no more than its line.<br>
+ * A record is written as its begin tag, its params in order like {@link org.l2jmobius.util.Util#mapToString} and its end tag.
+ */
+public class FormatRecord
+{
+	private static final String BEGIN = "_begin";
+	private static final String END = "_end";
+	
+	private final String _name;
+	/** The params of the record, {@code null} until they are read from the line. */
+	private Map<String, String> _params;
+	private String _line;
+	private int _start;
+	private int _end;
+	
+	/**
+	 * @param name the record name, {@code skill} for {@code skill_begin} records
+	 */
+	public FormatRecord(String name)
+	{
+		_name = name;
+		_params = new LinkedHashMap<>();
+	}
+	
+	private FormatRecord(String name, String line, int start, int end)
+	{
+		_name = name;
+		_line = line;
+		_start = start;
+		_end = end;
+	}
+	
+	/**
+	 * @param line a line of text
+	 * @return the record of the line, {@code null} if the line is not a {@code <name>_begin ... <name>_end} record
+	 */
+	public static FormatRecord parse(String line)
+	{
+		final String text = line.trim();
+		int start = text.indexOf('\t');
+		if (start < 0)
+		{
+			start = text.length();
+		}
+		
+		if ((start <= BEGIN.length()) || !text.startsWith(BEGIN, start - BEGIN.length()))
+		{
+			return null;
+		}
+		
+		final String name = text.substring(0, start - BEGIN.length());
+		final int end = text.length() - name.length() - END.length();
+		if ((end < start) || !text.startsWith(name, end) || !text.endsWith(END) || ((end > start) && isWordChar(text.charAt(end - 1))))
+		{
+			return null;
+		}
+		return new FormatRecord(name, text, start, end);
+	}
+	
+	public String getName()
+	{
+		return _name;
+	}
+	
+	/**
+	 * @param key the param name
+	 * @return the value of the param, {@code null} if the record has none
+	 */
+	public String get(String key)
+	{
+		return getParams().get(key);
+	}
+	
+	/**
+	 * Sets a param, keeping its place if the record already has it.
+	 * @param key the param name
+	 * @param value the value
+	 * @return this record
+	 */
+	public FormatRecord put(String key, String value)
+	{
+		getParams().put(key, value);
+		return this;
+	}
+	
+	/**
+	 * @param key the param name
+	 * @return the removed value, {@code null} if the record had none
+	 */
+	public String remove(String key)
+	{
+		return getParams().remove(key);
+	}
+	
+	/**
+	 * @return the params in order, changes are written with the record
+	 */
+	public Map<String, String> getParams()
+	{
+		if (_params == null)
+		{
+			_params = new LinkedHashMap<>();
+			int i = _start;
+			while (i < _end)
+			{
+				int next = _line.indexOf('\t', i);
+				if ((next < 0) || (next > _end))
+				{
+					next = _end;
+				}
+				
+				final int separator = _line.indexOf('=', i);
+				if ((separator >= 0) && (separator < next))
+				{
+					_params.put(_line.substring(i, separator), _line.substring(separator + 1, next));
+				}
+				i = next + 1;
+			}
+			_line = null;
+		}
+		return _params;
+	}
+	
+	/**
+	 * @param builder the builder
+	 * @return the builder, with the record appended without line end
+	 */
+	public StringBuilder appendTo(StringBuilder builder)
+	{
+		builder.append(_name).append(BEGIN).append('\t');
+		for (Map.Entry<String, String> entry : getParams().entrySet())
+		{
+			builder.append(entry.getKey()).append('=').append(entry.getValue()).append('\t');
+		}
+		return builder.append(_name).append(END);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return appendTo(new StringBuilder()).toString();
+	}
+	
+	private static boolean isWordChar(char c)
+	{
+		return (c == '_') || Character.isLetterOrDigit(c);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.listeners;
+
+import java.util.function.Consumer;
+
+import org.l2jmobius.actions.ActionTask;
+
+/**
+ * A {@link FormatListener} working record by record.<br>
+ * Formatted files are unpacked and packed as a stream through a new formatter per file, the text of a file is never held as a whole for formatting. Lines that are not records are dropped.<br>
+ * The string methods run the same formatters over a whole text, for callers that already have one.
+ */
+public interface RecordFormatListener extends FormatListener
+{
+	/**
+	 * @return a formatter from the text of a dat file to the text shown to the user
+	 */
+	RecordFormatter newDecoder();
+	
+	/**
+	 * @return a formatter from the text shown to the user to the text of a dat file
+	 */
+	RecordFormatter newEncoder();
+	
+	@Override
+	default String decode(ActionTask actionTask, double progressWeight, String str)
+	{
+		return format(newDecoder(), actionTask, progressWeight, str);
+	}
+	
+	@Override
+	default String encode(ActionTask actionTask, double progressWeight, String str)
+	{
+		return format(newEncoder(), actionTask, progressWeight, str);
+	}
+	
+	/**
+	 * @param formatter the formatter
+	 * @param actionTask the task, for progress and cancellation
+	 * @param progressWeight the weight of the formatting in the task
+	 * @param str the text
+	 * @return the formatted records, each ended by CRLF, {@code null} if the task was cancelled
+	 */
+	static String format(RecordFormatter formatter, ActionTask actionTask, double progressWeight, String str)
+	{
+		final StringBuilder builder = new StringBuilder(str.length());
+		final Consumer<FormatRecord> out = record -> record.appendTo(builder).append("\r\n");
+		double progress = actionTask.getCurrentProgress();
+		final int length = str.length();
+		int start = 0;
+		while (start < length)
+		{
+			int end = start;
+			while ((end < length) && (str.charAt(end) != '\r') && (str.charAt(end) != '\n'))
+			{
+				++end;
+			}
+			
+			final FormatRecord record = FormatRecord.parse(str.substring(start, end));
+			if (record != null)
+			{
+				formatter.format(record, out);
+			}
+			
+			if (actionTask.isCancelled())
+			{
+				return null;
+			}
+			
+			progress = actionTask.addProgress(progress, (100.0 * ((end + 1) - start)) / length, progressWeight);
+			start = end + 1;
+		}
+		formatter.finish(out);
+		return builder.toString();
+	}
+}
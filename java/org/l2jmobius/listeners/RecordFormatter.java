@@ -0,0 +1,40 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.listeners;
+
+import java.util.function.Consumer;
+
+/**
+ * Formats the records of one text, in order.<br>
+ * A formatter may hold records back, for instance until the records carrying their values were seen, and hand them out from a later call or from {@link #finish}.
+ */
+public interface RecordFormatter
+{
+	/**
+	 * @param record the next record of the text
+	 * @param out receives the formatted records
+	 */
+	void format(FormatRecord record, Consumer<FormatRecord> out);
+	
+	/**
+	 * Called once after the last record of the text.
+	 * @param out receives the records still held back
+	 */
+	default void finish(Consumer<FormatRecord> out)
+	{
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.listeners;
+
+/**
+ * Receives the life cycle and progress of an {@link org.l2jmobius.actions.ActionTask}.<br>
+ * Every callback does nothing by default. Callbacks are made from the thread running the task, except {@link #onAbortTask()} which comes from the thread that aborted it.
+ */
+public interface TaskListener
+{
+	default void onStartTask()
+	{
+	}
+	
+	default void onProgressTask(int value)
+	{
+	}
+	
+	default void onStopTask()
+	{
+	}
+	
+	default void onAbortTask()
+	{
+	}
+}
@@ -18,14 +18,21 @@ package org.l2jmobius.util;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
+/**
+ * Reads client values, which are little endian.<br>
+ * Buffers set to {@link ByteOrder#LITTLE_ENDIAN} are read directly, others have their bytes reversed.
+ */
 public class ByteReader
 {
 	private static final Charset DEFAULT_CHARSET = Charset.forName("cp1252");
 	private static final Charset UTF_16_LE_CHARSET = StandardCharsets.UTF_16LE;
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
 	
 	public static char readChar(ByteBuffer buffer)
 	{
@@ -39,7 +46,7 @@ public class ByteReader
 	
 	public static int readInt(ByteBuffer buffer)
 	{
-		return Integer.reverseBytes(buffer.getInt());
+		return (buffer.order() == ByteOrder.LITTLE_ENDIAN) ? buffer.getInt() : Integer.reverseBytes(buffer.getInt());
 	}
 	
 	public static int readUInt(ByteBuffer buffer)
@@ -49,22 +56,22 @@ public class ByteReader
 	
 	public static short readShort(ByteBuffer buffer)
 	{
-		return Short.reverseBytes(buffer.getShort());
+		return (buffer.order() == ByteOrder.LITTLE_ENDIAN) ? buffer.getShort() : Short.reverseBytes(buffer.getShort());
 	}
 	
 	public static double readDouble(ByteBuffer buffer)
 	{
-		return Double.longBitsToDouble(Long.reverseBytes(buffer.getLong()));
+		return Double.longBitsToDouble(readLong(buffer));
 	}
 	
 	public static long readLong(ByteBuffer buffer)
 	{
-		return Long.reverseBytes(buffer.getLong());
+		return (buffer.order() == ByteOrder.LITTLE_ENDIAN) ? buffer.getLong() : Long.reverseBytes(buffer.getLong());
 	}
 	
 	public static float readFloat(ByteBuffer buffer)
 	{
-		return Float.intBitsToFloat(Integer.reverseBytes(buffer.getInt()));
+		return Float.intBitsToFloat(readInt(buffer));
 	}
 	
 	public static int readCompactInt(ByteBuffer input) throws IOException
@@ -112,35 +119,27 @@ public class ByteReader
 	
 	public static String readRGB(ByteBuffer buffer)
 	{
-		String r = Integer.toHexString(buffer.get() & 0xFF).toUpperCase();
-		if (r.length() < 2)
-		{
-			r = "0" + r;
-		}
-		
-		String g = Integer.toHexString(buffer.get() & 0xFF).toUpperCase();
-		if (g.length() < 2)
-		{
-			g = "0" + g;
-		}
-		
-		String b = Integer.toHexString(buffer.get() & 0xFF).toUpperCase();
-		if (b.length() < 2)
-		{
-			b = "0" + b;
-		}
-		
-		return r + g + b;
+		final char[] chars = new char[6];
+		putHex(chars, 0, buffer.get());
+		putHex(chars, 2, buffer.get());
+		putHex(chars, 4, buffer.get());
+		return new String(chars);
 	}
 	
 	public static String readRGBA(ByteBuffer buffer)
 	{
-		String a = Integer.toHexString(buffer.get() & 0xFF).toUpperCase();
-		if (a.length() < 2)
-		{
-			a = "0" + a;
-		}
-		return a + readRGB(buffer);
+		final char[] chars = new char[8];
+		putHex(chars, 0, buffer.get());
+		putHex(chars, 2, buffer.get());
+		putHex(chars, 4, buffer.get());
+		putHex(chars, 6, buffer.get());
+		return new String(chars);
+	}
+	
+	private static void putHex(char[] chars, int index, byte value)
+	{
+		chars[index] = HEX_DIGITS[(value >> 4) & 0x0F];
+		chars[index + 1] = HEX_DIGITS[value & 0x0F];
 	}
 	
 	public static String readUtfString(ByteBuffer buffer, boolean isRaw) throws Exception
@@ -156,6 +155,17 @@ public class ByteReader
 			throw new Exception("To much data.");
 		}
 		
+		// A byte order mark at the start and an odd size were handled by the "Unicode" charset and the swap loop, they keep that path.
+		final int position = buffer.position();
+		if (((size & 1) == 0) && (size <= buffer.remaining()))
+		{
+			final int first = (buffer.get(position) & 0xFF) | ((buffer.get(position + 1) & 0xFF) << 8);
+			if ((first != 0xFEFF) && (first != 0xFFFE))
+			{
+				return checkAndReplaceNewLine(isRaw, decode(buffer, size, ByteReader.UTF_16_LE_CHARSET));
+			}
+		}
+		
 		final byte[] bytes = new byte[size];
 		try
 		{
@@ -187,9 +197,55 @@ public class ByteReader
 			throw new Exception("To much data.");
 		}
 		
-		final byte[] bytes = new byte[size];
-		input.get(bytes);
-		return checkAndReplaceNewLine(isRaw, new String(bytes, 0, bytes.length - ((len > 0) ? 1 : 2), (len > 0) ? ByteReader.DEFAULT_CHARSET : ByteReader.UTF_16_LE_CHARSET).intern());
+		if (size > input.remaining())
+		{
+			throw new BufferUnderflowException();
+		}
+		
+		if (len < 0)
+		{
+			final String str = decode(input, size - 2, ByteReader.UTF_16_LE_CHARSET);
+			input.position(input.position() + 2);
+			return checkAndReplaceNewLine(isRaw, str);
+		}
+		
+		final String str = decode(input, size - 1, isLatin1(input, size - 1) ? StandardCharsets.ISO_8859_1 : ByteReader.DEFAULT_CHARSET);
+		input.get();
+		return checkAndReplaceNewLine(isRaw, str);
+	}
+	
+	/**
+	 * Decodes bytes at the position of the buffer and moves past them, straight from the backing array when there is one.
+	 */
+	private static String decode(ByteBuffer buffer, int length, Charset charset)
+	{
+		if (buffer.hasArray())
+		{
+			final int position = buffer.position();
+			final String str = new String(buffer.array(), buffer.arrayOffset() + position, length, charset);
+			buffer.position(position + length);
+			return str;
+		}
+		
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, charset);
+	}
+	
+	/**
+	 * @return true if the bytes at the position of the buffer decode the same in cp1252 and ISO-8859-1, which has a faster decoder
+	 */
+	private static boolean isLatin1(ByteBuffer buffer, int length)
+	{
+		for (int i = buffer.position(), end = i + length; i < end; ++i)
+		{
+			final int b = buffer.get(i) & 0xFF;
+			if ((b >= 0x80) && (b < 0xA0))
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	private static String checkAndReplaceNewLine(boolean isRaw, String str)
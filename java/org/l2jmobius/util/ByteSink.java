@@ -0,0 +1,280 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable little endian byte buffer that values are written to in place.<br>
+ * Encodes values exactly like {@link ByteWriter}, without an array per value. Positions can be marked so bytes whose value is only known later (such as the size of a cycle) are inserted when the result is built.
+ */
+public final class ByteSink
+{
+	/** Larger buffers are not kept for reuse once reset. */
+	private static final int MAX_RETAINED_SIZE = 32 * 1024 * 1024;
+	private static final int INITIAL_SIZE = 64 * 1024;
+	
+	private byte[] _data;
+	private int _size;
+	private int[] _insertPositions = new int[16];
+	private byte[][] _inserts = new byte[16][];
+	private int _insertCount;
+	private int _insertSize;
+	
+	public ByteSink()
+	{
+		this(INITIAL_SIZE);
+	}
+	
+	public ByteSink(int initialSize)
+	{
+		_data = new byte[initialSize];
+	}
+	
+	public int size()
+	{
+		return _size;
+	}
+	
+	/**
+	 * Drops bytes written after a position, to undo a value that failed half way.
+	 */
+	public void truncate(int size)
+	{
+		_size = size;
+	}
+	
+	/**
+	 * Clears the sink so it can be used for another file.
+	 */
+	public void reset()
+	{
+		_size = 0;
+		Arrays.fill(_inserts, 0, _insertCount, null);
+		_insertCount = 0;
+		_insertSize = 0;
+		if (_data.length > MAX_RETAINED_SIZE)
+		{
+			_data = new byte[INITIAL_SIZE];
+		}
+	}
+	
+	/**
+	 * Inserts bytes at a position that was written earlier, when {@link #toByteArray()} builds the result.<br>
+	 * Insertions must be made in increasing position order.
+	 */
+	public void insert(int position, byte[] bytes)
+	{
+		if (_insertCount == _insertPositions.length)
+		{
+			_insertPositions = Arrays.copyOf(_insertPositions, _insertCount * 2);
+			_inserts = Arrays.copyOf(_inserts, _insertCount * 2);
+		}
+		_insertPositions[_insertCount] = position;
+		_inserts[_insertCount] = bytes;
+		++_insertCount;
+		_insertSize += bytes.length;
+	}
+	
+	public byte[] toByteArray()
+	{
+		final byte[] result = new byte[_size + _insertSize];
+		int from = 0;
+		int to = 0;
+		for (int i = 0; i < _insertCount; ++i)
+		{
+			final int position = _insertPositions[i];
+			System.arraycopy(_data, from, result, to, position - from);
+			to += position - from;
+			from = position;
+			System.arraycopy(_inserts[i], 0, result, to, _inserts[i].length);
+			to += _inserts[i].length;
+		}
+		System.arraycopy(_data, from, result, to, _size - from);
+		return result;
+	}
+	
+	public void write(byte[] bytes)
+	{
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, _data, _size, bytes.length);
+		_size += bytes.length;
+	}
+	
+	public void writeByte(int value)
+	{
+		ensure(1);
+		_data[_size++] = (byte) value;
+	}
+	
+	public void writeShort(int value)
+	{
+		ensure(2);
+		_data[_size++] = (byte) value;
+		_data[_size++] = (byte) (value >> 8);
+	}
+	
+	public void writeInt(int value)
+	{
+		ensure(4);
+		_data[_size++] = (byte) value;
+		_data[_size++] = (byte) (value >> 8);
+		_data[_size++] = (byte) (value >> 16);
+		_data[_size++] = (byte) (value >> 24);
+	}
+	
+	public void writeLong(long value)
+	{
+		writeInt((int) value);
+		writeInt((int) (value >> 32));
+	}
+	
+	public void writeFloat(float value)
+	{
+		writeInt(Float.floatToRawIntBits(value));
+	}
+	
+	public void writeDouble(double value)
+	{
+		writeLong(Double.doubleToRawLongBits(value));
+	}
+	
+	public void writeCompactInt(int value)
+	{
+		ensure(5);
+		final boolean negative = value < 0;
+		final int v = Math.abs(value);
+		int size = 5;
+		while ((size > 1) && (((v >> ((7 * size) - 8)) & 0x7F) == 0))
+		{
+			--size;
+		}
+		
+		int first = v & 0x3F;
+		if (negative)
+		{
+			first |= 0x80;
+		}
+		if (size > 1)
+		{
+			first |= 0x40;
+		}
+		_data[_size++] = (byte) first;
+		for (int i = 1; i < size; ++i)
+		{
+			int next = (v >> ((7 * i) - 1)) & 0x7F;
+			if (i != (size - 1))
+			{
+				next |= 0x80;
+			}
+			_data[_size++] = (byte) next;
+		}
+	}
+	
+	public void writeRGB(String rgb)
+	{
+		final int r = Integer.parseInt(rgb.substring(0, 2), 16);
+		final int g = Integer.parseInt(rgb.substring(2, 4), 16);
+		final int b = Integer.parseInt(rgb.substring(4, 6), 16);
+		writeByte(r);
+		writeByte(g);
+		writeByte(b);
+	}
+	
+	public void writeRGBA(String rgba)
+	{
+		final int a = Integer.parseInt(rgba.substring(6, 8), 16);
+		writeRGB(rgba.substring(0, 6));
+		writeByte(a);
+	}
+	
+	public void writeUtfString(String str, boolean isRaw)
+	{
+		if (str.isEmpty())
+		{
+			writeInt(0);
+			return;
+		}
+		
+		if (!isRaw)
+		{
+			str = checkAndReplaceNewLine(str);
+		}
+		
+		final int size = str.length();
+		ensure(4 + (size * 2));
+		writeInt(size * 2);
+		for (int i = 0; i < size; ++i)
+		{
+			final char c = str.charAt(i);
+			_data[_size++] = (byte) c;
+			_data[_size++] = (byte) (c >> 8);
+		}
+	}
+	
+	public void writeString(String str, boolean isRaw)
+	{
+		if ((str == null) || str.isEmpty())
+		{
+			writeCompactInt(0);
+			return;
+		}
+		
+		if (!isRaw)
+		{
+			str = checkAndReplaceNewLine(str);
+		}
+		
+		final int size = str.length();
+		boolean ascii = true;
+		for (int i = 0; ascii && (i < size); ++i)
+		{
+			ascii = str.charAt(i) < 0x80;
+		}
+		
+		if (ascii)
+		{
+			writeCompactInt(size + 1);
+			ensure(size + 1);
+			for (int i = 0; i < size; ++i)
+			{
+				_data[_size++] = (byte) str.charAt(i);
+			}
+			_data[_size++] = 0;
+		}
+		else
+		{
+			final byte[] bytes = (str + '\0').getBytes(StandardCharsets.UTF_16LE);
+			writeCompactInt(-bytes.length / 2);
+			write(bytes);
+		}
+	}
+	
+	private void ensure(int count)
+	{
+		if ((_size + count) > _data.length)
+		{
+			_data = Arrays.copyOf(_data, Math.max(_data.length * 2, _size + count));
+		}
+	}
+	
+	private static String checkAndReplaceNewLine(String str)
+	{
+		return str.contains("\\r\\n") ? str.replace("\\r\\n", "\r\n") : str;
+	}
+}
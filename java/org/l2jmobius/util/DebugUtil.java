@@ -20,11 +20,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.l2jmobius.config.ConfigDebug;
-import org.l2jmobius.xml.Variant;
 
 public class DebugUtil
 {
@@ -38,7 +38,19 @@ public class DebugUtil
 		}
 	}
 	
-	public static void debugPos(int pos, String name, Variant val)
+	/**
+	 * Logs a debug message that is only built when debug messages are enabled.
+	 * @param message the supplier of the message
+	 */
+	public static void debug(Supplier<String> message)
+	{
+		if (ConfigDebug.DAT_DEBUG_MSG)
+		{
+			DebugUtil.LOGGER.info(message.get());
+		}
+	}
+	
+	public static void debugPos(int pos, String name, String val)
 	{
 		if (ConfigDebug.DAT_DEBUG_POS)
 		{
@@ -0,0 +1,329 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers, for each input file of a mass action, the state of the input and of the output written from it.<br>
+ * A later run can skip the inputs that did not change since, as long as their output was not touched either.<br>
+ * The manifest is a tab separated text file. It starts with the settings it was written with, and is ignored as a whole when they differ.
+ */
+public class FileManifest
+{
+	private static final Logger LOGGER = Logger.getLogger(FileManifest.class.getName());
+	
+	private static final String HEADER = "# L2ClientDat manifest 2";
+	
+	private final File _file;
+	private final String _settings;
+	private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+	
+	/**
+	 * Loads a manifest, starting empty if it does not exist or was written with other settings.
+	 * @param file the manifest file
+	 * @param settings everything besides the inputs that the outputs depend on, without tabs or line breaks
+	 */
+	public FileManifest(File file, String settings)
+	{
+		_file = file;
+		_settings = settings;
+		if (!file.isFile())
+		{
+			return;
+		}
+		
+		try
+		{
+			final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+			if ((lines.size() < 2) || !lines.get(0).equals(HEADER) || !lines.get(1).equals(settings))
+			{
+				return;
+			}
+			
+			for (int i = 2; i < lines.size(); ++i)
+			{
+				final String[] values = lines.get(i).split("\t", -1);
+				if (values.length == 13)
+				{
+					final FileStamp source = new FileStamp(Long.parseLong(values[1]), Long.parseLong(values[2]), Long.parseLong(values[3]));
+					final FileStamp target = new FileStamp(Long.parseLong(values[10]), Long.parseLong(values[11]), Long.parseLong(values[12]));
+					_entries.put(values[0], new Entry(source, values[4], Long.parseLong(values[5]), Boolean.parseBoolean(values[6]), Integer.parseInt(values[7]), Integer.parseInt(values[8]), values[9], target));
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOGGER.log(Level.WARNING, "Ignoring broken manifest " + file.getPath(), e);
+			_entries.clear();
+		}
+	}
+	
+	/**
+	 * @param name the input file name
+	 * @return the entry of the input, {@code null} if it was never recorded
+	 */
+	public Entry get(String name)
+	{
+		return _entries.get(name);
+	}
+	
+	public void put(String name, Entry entry)
+	{
+		_entries.put(name, entry);
+	}
+	
+	public void remove(String name)
+	{
+		_entries.remove(name);
+	}
+	
+	/**
+	 * Drops the entries of inputs that are gone.
+	 * @param names the input file names to keep
+	 */
+	public void retainAll(Collection<String> names)
+	{
+		_entries.keySet().retainAll(names);
+	}
+	
+	/**
+	 * Writes the manifest, entries sorted by name. The previous file is only replaced once the new one is complete.
+	 */
+	public void save() throws IOException
+	{
+		final File temp = new File(_file.getPath() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))
+		{
+			writer.write(HEADER);
+			writer.newLine();
+			writer.write(_settings);
+			writer.newLine();
+			for (Map.Entry<String, Entry> e : new TreeMap<>(_entries).entrySet())
+			{
+				final Entry entry = e.getValue();
+				writer.write(String.join("\t", e.getKey(), entry._source.toString(), entry._crypter, String.valueOf(entry._version), String.valueOf(entry._usesNames), String.valueOf(entry._namesBefore), String.valueOf(entry._namesAfter), entry._target, entry._targetStamp.toString()));
+				writer.newLine();
+			}
+		}
+		Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * The state of an input and of the output written from it.
+	 */
+	public static class Entry
+	{
+		private final FileStamp _source;
+		private final String _crypter;
+		private final long _version;
+		private final boolean _usesNames;
+		/** The name table size before and after the input added its names, -1 if it added none. */
+		private final int _namesBefore;
+		private final int _namesAfter;
+		private final String _target;
+		private final FileStamp _targetStamp;
+		
+		/**
+		 * @param source the state of the input
+		 * @param crypter the name of the crypter the input was read or written with
+		 * @param version the version of the descriptor, 0 for files without structure
+		 * @param usesNames {@code true} if the output refers to L2GameDataName indexes
+		 * @param target the output file name
+		 * @param targetStamp the state of the output
+		 */
+		public Entry(FileStamp source, String crypter, long version, boolean usesNames, String target, FileStamp targetStamp)
+		{
+			this(source, crypter, version, usesNames, -1, -1, target, targetStamp);
+		}
+		
+		private Entry(FileStamp source, String crypter, long version, boolean usesNames, int namesBefore, int namesAfter, String target, FileStamp targetStamp)
+		{
+			_source = source;
+			_crypter = crypter;
+			_version = version;
+			_usesNames = usesNames;
+			_namesBefore = namesBefore;
+			_namesAfter = namesAfter;
+			_target = target;
+			_targetStamp = targetStamp;
+		}
+		
+		/**
+		 * @param before the name table size before the input was written
+		 * @param after the name table size after the input added its names
+		 * @return a copy of the entry recording the names the input added
+		 */
+		public Entry withNamesRange(int before, int after)
+		{
+			return new Entry(_source, _crypter, _version, _usesNames, before, after, _target, _targetStamp);
+		}
+		
+		public String getCrypter()
+		{
+			return _crypter;
+		}
+		
+		public long getVersion()
+		{
+			return _version;
+		}
+		
+		public boolean usesNames()
+		{
+			return _usesNames;
+		}
+		
+		/**
+		 * @return {@code true} if the input added names to the name table when it was written
+		 */
+		public boolean addsNames()
+		{
+			return _namesBefore >= 0;
+		}
+		
+		public int getNamesBefore()
+		{
+			return _namesBefore;
+		}
+		
+		public int getNamesAfter()
+		{
+			return _namesAfter;
+		}
+		
+		public String getTarget()
+		{
+			return _target;
+		}
+		
+		/**
+		 * @param source the input file
+		 * @param dir the output directory
+		 * @return {@code true} if neither the input nor its output changed since the entry was recorded
+		 */
+		public boolean isUpToDate(File source, File dir)
+		{
+			return _source.matches(source) && _targetStamp.matches(new File(dir, _target));
+		}
+	}
+	
+	/**
+	 * Size, modification time and CRC32 of a file.<br>
+	 * A file matches a stamp when its size is the same and either its modification time or its content is the same, so a copy or a checkout that only touches the time still matches.
+	 */
+	public static class FileStamp
+	{
+		private final long _size;
+		private final long _lastModified;
+		private final long _checksum;
+		
+		FileStamp(long size, long lastModified, long checksum)
+		{
+			_size = size;
+			_lastModified = lastModified;
+			_checksum = checksum;
+		}
+		
+		public static FileStamp of(File file) throws IOException
+		{
+			return new FileStamp(file.length(), file.lastModified(), checksum(file));
+		}
+		
+		public long getChecksum()
+		{
+			return _checksum;
+		}
+		
+		public boolean matches(File file)
+		{
+			if (!file.isFile() || (file.length() != _size))
+			{
+				return false;
+			}
+			
+			if (file.lastModified() == _lastModified)
+			{
+				return true;
+			}
+			
+			try
+			{
+				return checksum(file) == _checksum;
+			}
+			catch (IOException e)
+			{
+				return false;
+			}
+		}
+		
+		@Override
+		public String toString()
+		{
+			return _size + "\t" + _lastModified + "\t" + _checksum;
+		}
+		
+		/**
+		 * @param file the file
+		 * @return the CRC32 of the file content, -1 if the file does not exist or cannot be read
+		 */
+		public static long checksumOf(File file)
+		{
+			try
+			{
+				return file.isFile() ? checksum(file) : -1;
+			}
+			catch (IOException e)
+			{
+				return -1;
+			}
+		}
+		
+		/**
+		 * @param file the file
+		 * @return the CRC32 of the file content
+		 * @throws IOException if the file cannot be read
+		 */
+		public static long checksum(File file) throws IOException
+		{
+			final CRC32 crc = new CRC32();
+			final byte[] buffer = new byte[64 * 1024];
+			try (InputStream is = Files.newInputStream(file.toPath()))
+			{
+				for (int read = is.read(buffer); read >= 0; read = is.read(buffer))
+				{
+					crc.update(buffer, 0, read);
+				}
+			}
+			return crc.getValue();
+		}
+	}
+}
@@ -28,6 +28,8 @@ public class Descriptor
 	private boolean _isRawData;
 	private boolean _isSafePackage;
 	private FormatListener _format;
+	private long _version;
+	private volatile DescriptorPlan _plan;
 	
 	Descriptor(String alias, String filePattern, List<ParamNode> nodes)
 	{
@@ -72,6 +74,63 @@ public class Descriptor
 		return _nodes;
 	}
 	
+	/**
+	 * @return the compiled form of the nodes, built on first use
+	 */
+	DescriptorPlan getPlan()
+	{
+		DescriptorPlan plan = _plan;
+		if (plan == null)
+		{
+			synchronized (this)
+			{
+				plan = _plan;
+				if (plan == null)
+				{
+					plan = new DescriptorPlan(_nodes);
+					_plan = plan;
+				}
+			}
+		}
+		return plan;
+	}
+	
+	/**
+	 * @return a checksum of every data file the descriptor was built from (structure, definitions, enums and format source), it changes whenever the text it reads or writes may change
+	 */
+	public long getVersion()
+	{
+		return _version;
+	}
+	
+	void setVersion(long version)
+	{
+		_version = version;
+	}
+	
+	/**
+	 * @return {@code true} if some value of the file is an index in the L2GameDataName table
+	 */
+	public boolean usesGameDataNames()
+	{
+		return usesGameDataNames(_nodes);
+	}
+	
+	private static boolean usesGameDataNames(List<ParamNode> nodes)
+	{
+		if (nodes != null)
+		{
+			for (ParamNode node : nodes)
+			{
+				if ((node.getType() == ParamType.MAP_INT) || usesGameDataNames(node.getSubNodes()))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
 	public FormatListener getFormat()
 	{
 		return _format;
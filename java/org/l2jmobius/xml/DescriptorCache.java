@@ -0,0 +1,259 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.l2jmobius.util.FileManifest.FileStamp;
+import org.l2jmobius.xml.DescriptorParser.StructureFile;
+
+/**
+ * Binary copy of the parsed structure files, so a warm start does not parse any structure XML.<br>
+ * Each structure file gets its own cache file holding its links and its fully resolved {@link ParamNode} trees (definitions already expanded).<br>
+ * An entry is used only when the source file has the same size and either the same modification time or the same CRC32, and the definitions have the same CRC32.
+ */
+final class DescriptorCache
+{
+	private static final Logger LOGGER = Logger.getLogger(DescriptorCache.class.getName());
+	
+	private static final File CACHE_DIR = new File("./cache/structure/");
+	private static final int MAGIC = 0x4C324443; // L2DC
+	private static final int VERSION = 1;
+	/** Node and value types are stored by ordinal, any change to the enums invalidates the cache. */
+	private static final int SCHEMA = (((31 * VERSION) + Arrays.toString(ParamNodeType.values()).hashCode()) * 31) + Arrays.toString(ParamType.values()).hashCode();
+	
+	private DescriptorCache()
+	{
+	}
+	
+	/**
+	 * @param source the structure file
+	 * @param definitionsStamp the checksum of the definitions the trees were resolved with
+	 * @return the cached content of the file, or {@code null} when there is no valid entry
+	 */
+	static StructureFile read(File source, long definitionsStamp)
+	{
+		final File cache = getCacheFile(source);
+		if (!cache.isFile())
+		{
+			return null;
+		}
+		
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cache.toPath()))))
+		{
+			if ((in.readInt() != MAGIC) || (in.readInt() != SCHEMA) || (in.readLong() != source.length()))
+			{
+				return null;
+			}
+			
+			final long lastModified = in.readLong();
+			final long crc = in.readLong();
+			if ((in.readLong() != definitionsStamp) || ((lastModified != source.lastModified()) && (crc != FileStamp.checksumOf(source))))
+			{
+				return null;
+			}
+			
+			final StructureFile structure = new StructureFile(in.readUTF());
+			for (int i = in.readInt(); i > 0; --i)
+			{
+				structure.links.add(new DescriptorLink(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+			}
+			
+			for (int i = in.readInt(); i > 0; --i)
+			{
+				final String alias = in.readUTF();
+				final String filePattern = in.readUTF();
+				final boolean isRawData = in.readBoolean();
+				final boolean isSafePackage = in.readBoolean();
+				final String formatName = readNullableString(in);
+				final Descriptor desc = new Descriptor(alias, filePattern, readNodes(in));
+				desc.setIsRawData(isRawData);
+				desc.setIsSafePackage(isSafePackage);
+				structure.descriptors.add(desc);
+				structure.formatNames.add(formatName);
+			}
+			return structure;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOGGER.log(Level.WARNING, "Ignoring broken descriptor cache " + cache.getPath(), e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores the content of a structure file, replacing the previous entry.
+	 * @param source the structure file
+	 * @param definitionsStamp the checksum of the definitions the trees were resolved with
+	 * @param structure the parsed content
+	 */
+	static void write(File source, long definitionsStamp, StructureFile structure)
+	{
+		final File cache = getCacheFile(source);
+		final File temp = new File(cache.getPath() + ".tmp");
+		try
+		{
+			Files.createDirectories(cache.getParentFile().toPath());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(SCHEMA);
+				out.writeLong(source.length());
+				out.writeLong(source.lastModified());
+				out.writeLong(FileStamp.checksumOf(source));
+				out.writeLong(definitionsStamp);
+				out.writeUTF(structure.name);
+				out.writeInt(structure.links.size());
+				for (DescriptorLink link : structure.links)
+				{
+					out.writeUTF(link.getFilePattern());
+					out.writeUTF(link.getNamePattern());
+					out.writeUTF(link.getLinkFile());
+					out.writeUTF(link.getLinkVersion());
+				}
+				
+				out.writeInt(structure.descriptors.size());
+				for (int i = 0; i < structure.descriptors.size(); ++i)
+				{
+					final Descriptor desc = structure.descriptors.get(i);
+					out.writeUTF(desc.getAlias());
+					out.writeUTF(desc.getFilePattern());
+					out.writeBoolean(desc.isRawData());
+					out.writeBoolean(desc.isSafePackage());
+					writeNullableString(out, structure.formatNames.get(i));
+					writeNodes(out, desc.getNodes());
+				}
+			}
+			
+			try
+			{
+				Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Could not write descriptor cache " + cache.getPath() + ": " + e.getMessage());
+			temp.delete();
+		}
+	}
+	
+	private static File getCacheFile(File source)
+	{
+		final String path = DescriptorParser.STRUCTURE_DIR.toPath().relativize(source.toPath()).toString();
+		return new File(CACHE_DIR, path.substring(0, path.length() - 4) + ".bin");
+	}
+	
+	private static void writeNodes(DataOutputStream out, List<ParamNode> nodes) throws IOException
+	{
+		if (nodes == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		
+		out.writeInt(nodes.size());
+		for (ParamNode node : nodes)
+		{
+			out.writeByte(node.getEntityType().ordinal());
+			out.writeByte((node.getType() == null) ? -1 : node.getType().ordinal());
+			writeNullableString(out, node.getName());
+			out.writeInt(node.getSize());
+			out.writeBoolean(node.isNameHidden());
+			out.writeBoolean(node.isIterator());
+			out.writeBoolean(node.isSkipWriteSize());
+			writeNullableString(out, node.getCycleName());
+			writeNullableString(out, node.getEnumName());
+			writeNullableString(out, node.getParamIf());
+			writeNullableString(out, node.getValIf());
+			writeNullableString(out, node.getParamMask());
+			out.writeInt(node.getValMask());
+			writeNodes(out, node.getSubNodes());
+		}
+	}
+	
+	private static List<ParamNode> readNodes(DataInputStream in) throws IOException
+	{
+		final int count = in.readInt();
+		if (count < 0)
+		{
+			return null;
+		}
+		
+		final List<ParamNode> nodes = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i)
+		{
+			final ParamNodeType entityType = ParamNodeType.values()[in.readByte()];
+			final int type = in.readByte();
+			final ParamNode node = new ParamNode(readNullableString(in), entityType, (type < 0) ? null : ParamType.values()[type]);
+			node.setSize(in.readInt());
+			if (in.readBoolean())
+			{
+				node.setHidden();
+			}
+			if (in.readBoolean())
+			{
+				node.setIterator();
+			}
+			node.setSkipWriteSize(in.readBoolean());
+			node.setCycleName(readNullableString(in));
+			node.setEnumName(readNullableString(in));
+			node.setParamIf(readNullableString(in));
+			node.setValIf(readNullableString(in));
+			node.setParamMask(readNullableString(in));
+			node.setValMask(in.readInt());
+			final List<ParamNode> subNodes = readNodes(in);
+			if (subNodes != null)
+			{
+				node.addSubNodes(subNodes);
+			}
+			nodes.add(node);
+		}
+		return nodes;
+	}
+	
+	private static void writeNullableString(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+		{
+			out.writeUTF(value);
+		}
+	}
+	
+	private static String readNullableString(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -26,10 +26,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -37,6 +41,7 @@ import org.w3c.dom.Node;
 import org.l2jmobius.L2ClientDat;
 import org.l2jmobius.listeners.FormatListener;
 import org.l2jmobius.util.DebugUtil;
+import org.l2jmobius.util.FileManifest.FileStamp;
 import org.l2jmobius.util.Util;
 import org.l2jmobius.xml.exceptions.CycleArgumentException;
 
@@ -44,35 +49,203 @@ public class DescriptorParser
 {
 	private static final Logger LOGGER = Logger.getLogger(DescriptorParser.class.getName());
 	
-	private final Map<String, Map<Integer, String>> _enumMap = new HashMap<>();
-	private final Map<String, Map<String, String>> _enumReverseMap = new HashMap<>();
-	private final Map<String, Map<String, Descriptor>> _descriptors = new HashMap<>();
-	private final Map<String, List<ParamNode>> _definitions = new HashMap<>();
-	private final Map<String, List<DescriptorLink>> _links = new LinkedHashMap<>();
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = ThreadLocal.withInitial(() ->
+	{
+		final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setValidating(false);
+		factory.setIgnoringElementContentWhitespace(true);
+		factory.setIgnoringComments(true);
+		try
+		{
+			return factory.newDocumentBuilder();
+		}
+		catch (ParserConfigurationException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	});
+	
+	static final File STRUCTURE_DIR = new File("./data/structure/");
+	private static final File DEFINITIONS_FILE = new File("./data/definitions.xml");
+	
+	// Replaced as a whole by each parse, readers never see a half loaded state.
+	private volatile Map<String, EnumTable> _enums = Collections.emptyMap();
+	private volatile Map<String, List<DescriptorLink>> _links = Collections.emptyMap();
+	private volatile Map<String, LinkIndex> _linkIndexes = Collections.emptyMap();
+	private volatile Map<String, List<File>> _structureFiles = Collections.emptyMap();
+	private volatile long _filesStamp;
+	private volatile long _definitionsStamp;
+	private volatile long _enumsStamp;
+	
+	private volatile Map<String, FormatListener> _formats = new ConcurrentHashMap<>();
+	/** Only parsed when a structure file is missing from the cache. */
+	private volatile Map<String, List<ParamNode>> _definitions;
+	/** Not the instance lock, parse() holds it while its workers load the chronicle files. */
+	private final Object _definitionsLock = new Object();
 	
 	public DescriptorParser()
 	{
 	}
 	
-	public void parse()
+	/**
+	 * Loads the enums and the chronicle links.<br>
+	 * Chronicle files are the ones directly in the structure folder, they are read in parallel and merged in file order. The files in sub folders are only indexed by name, their descriptors are loaded when a link first refers to them.<br>
+	 * Structure files are read from {@link DescriptorCache} when it is up to date, and written to it after being parsed.
+	 */
+	public synchronized void parse()
+	{
+		final long filesStamp = getFilesStamp();
+		_definitions = null;
+		_definitionsStamp = FileStamp.checksumOf(DEFINITIONS_FILE);
+		
+		final Map<String, Map<Integer, String>> enumMap = new HashMap<>();
+		final Map<String, Map<String, Integer>> enumReverseMap = new HashMap<>();
+		long enumsStamp = 0;
+		for (File file : Util.loadFiles("./data/enums/", ".xml"))
+		{
+			parseEnum(file, enumMap, enumReverseMap);
+			enumsStamp = (31 * enumsStamp) + FileStamp.checksumOf(file);
+		}
+		_enumsStamp = enumsStamp;
+		
+		final List<File> chronicleFiles = new ArrayList<>();
+		final Map<String, List<File>> structureFiles = new HashMap<>();
+		for (File file : Util.loadFiles("./data/structure/", ".xml"))
+		{
+			if (STRUCTURE_DIR.equals(file.getParentFile()))
+			{
+				chronicleFiles.add(file);
+			}
+			structureFiles.computeIfAbsent(getStructureName(file), k -> new ArrayList<>()).add(file);
+		}
+		
+		final List<StructureFile> chronicles = chronicleFiles.parallelStream().map(this::loadStructure).collect(Collectors.toList());
+		final Map<String, List<DescriptorLink>> links = new LinkedHashMap<>();
+		for (StructureFile structure : chronicles)
+		{
+			for (DescriptorLink link : structure.links)
+			{
+				links.computeIfAbsent(link.getFilePattern(), k -> new ArrayList<>()).add(link);
+			}
+		}
+		
+		// Descriptors by structure file name, filled when a link first refers to them.
+		final Map<String, Map<String, Descriptor>> descriptors = new ConcurrentHashMap<>();
+		final Map<String, LinkIndex> linkIndexes = new HashMap<>();
+		links.replaceAll((dir, list) -> Collections.unmodifiableList(list));
+		links.forEach((dir, list) -> linkIndexes.put(dir, new LinkIndex(list, name -> descriptors.computeIfAbsent(name, this::loadDescriptors))));
+		structureFiles.replaceAll((name, files) -> Collections.unmodifiableList(files));
+		final Map<String, EnumTable> enums = new HashMap<>();
+		enumMap.forEach((name, eTypes) -> enums.put(name, new EnumTable(eTypes, enumReverseMap.get(name))));
+		_enums = Collections.unmodifiableMap(enums);
+		_structureFiles = Collections.unmodifiableMap(structureFiles);
+		_formats = new ConcurrentHashMap<>();
+		_links = Collections.unmodifiableMap(links);
+		_linkIndexes = linkIndexes;
+		_filesStamp = filesStamp;
+	}
+	
+	/**
+	 * @param name the structure file name, without extension
+	 * @return the descriptors of every structure file with that name by file pattern, empty if there is none
+	 */
+	private Map<String, Descriptor> loadDescriptors(String name)
+	{
+		final Map<String, Descriptor> versions = new HashMap<>();
+		for (File file : _structureFiles.getOrDefault(name, Collections.emptyList()))
+		{
+			final StructureFile structure = loadStructure(file);
+			final long fileVersion = (((31 * FileStamp.checksumOf(file)) + _definitionsStamp) * 31) + _enumsStamp;
+			for (int i = 0; i < structure.descriptors.size(); ++i)
+			{
+				final Descriptor desc = structure.descriptors.get(i);
+				final String formatName = structure.formatNames.get(i);
+				long version = fileVersion;
+				if (formatName != null)
+				{
+					version = (31 * version) + FileStamp.checksumOf(new File("./data/structure/format/" + formatName + ".java"));
+					final FormatListener format = _formats.computeIfAbsent(formatName, DescriptorParser::loadFormat);
+					if (format != null)
+					{
+						desc.setFormat(format);
+					}
+				}
+				desc.setVersion(version);
+				bindEnums(desc.getNodes());
+				versions.put(desc.getFilePattern(), desc);
+			}
+		}
+		return Collections.unmodifiableMap(versions);
+	}
+	
+	private StructureFile loadStructure(File file)
+	{
+		final long definitionsStamp = _definitionsStamp;
+		StructureFile structure = DescriptorCache.read(file, definitionsStamp);
+		if (structure == null)
+		{
+			structure = parseDescriptor(file);
+			if (structure.complete)
+			{
+				DescriptorCache.write(file, definitionsStamp, structure);
+			}
+		}
+		return structure;
+	}
+	
+	private static String getStructureName(File file)
+	{
+		return file.getName().substring(0, file.getName().length() - 4);
+	}
+	
+	private static Document readDocument(File file) throws Exception
+	{
+		final DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+		builder.reset();
+		return builder.parse(file);
+	}
+	
+	private static FormatListener loadFormat(String formatName)
+	{
+		final Object obj = Util.loadJavaClass(formatName, "./data/structure/format/");
+		if (obj == null)
+		{
+			LOGGER.log(Level.WARNING, ("Format src file '" + formatName + ".java' not found!"));
+		}
+		else if (obj instanceof FormatListener)
+		{
+			return (FormatListener) obj;
+		}
+		return null;
+	}
+	
+	private Map<String, List<ParamNode>> getDefinitions()
 	{
-		parseDefinitions();
-		Util.loadFiles("./data/enums/", ".xml").forEach(this::parseEnum);
-		Util.loadFiles("./data/structure/", ".xml").forEach(this::parseDescriptor);
+		Map<String, List<ParamNode>> definitions = _definitions;
+		if (definitions == null)
+		{
+			synchronized (_definitionsLock)
+			{
+				definitions = _definitions;
+				if (definitions == null)
+				{
+					definitions = Collections.unmodifiableMap(parseDefinitions());
+					_definitions = definitions;
+				}
+			}
+		}
+		return definitions;
 	}
 	
-	private void parseDefinitions()
+	private Map<String, List<ParamNode>> parseDefinitions()
 	{
-		final File def = new File("./data/definitions.xml");
+		final Map<String, List<ParamNode>> definitions = new HashMap<>();
+		final File def = DEFINITIONS_FILE;
 		if (def.exists())
 		{
-			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setValidating(false);
-			factory.setIgnoringElementContentWhitespace(true);
-			factory.setIgnoringComments(true);
 			try
 			{
-				final Document document = factory.newDocumentBuilder().parse(def);
+				final Document document = readDocument(def);
 				for (Node defsNode = document.getFirstChild(); defsNode != null; defsNode = document.getNextSibling())
 				{
 					if (defsNode.getNodeName().equals("definitions"))
@@ -82,8 +255,8 @@ public class DescriptorParser
 							if (defNode.getNodeName().equals("definition"))
 							{
 								final String defName = defNode.getAttributes().getNamedItem("name").getNodeValue();
-								final List<ParamNode> nodes = parseNodes(defNode, true, new HashSet<>(), "definitions->" + defName, Collections.emptyList());
-								_definitions.put(defName, nodes);
+								final List<ParamNode> nodes = parseNodes(defNode, true, new HashSet<>(), "definitions->" + defName, Collections.emptyList(), definitions);
+								definitions.put(defName, nodes);
 							}
 						}
 					}
@@ -94,9 +267,30 @@ public class DescriptorParser
 				LOGGER.log(Level.WARNING, e.getMessage(), e);
 			}
 		}
+		return definitions;
 	}
 	
-	private void parseEnum(File file)
+	/**
+	 * Gives the enum nodes of a tree the table of their enum, so values are resolved without looking the enum up by name.
+	 */
+	private void bindEnums(List<ParamNode> nodes)
+	{
+		if (nodes == null)
+		{
+			return;
+		}
+		
+		for (ParamNode node : nodes)
+		{
+			if (node.isEnum())
+			{
+				node.setEnumTable(_enums.get(node.getEnumName()));
+			}
+			bindEnums(node.getSubNodes());
+		}
+	}
+	
+	private void parseEnum(File file, Map<String, Map<Integer, String>> enumMap, Map<String, Map<String, Integer>> enumReverseMap)
 	{
 		if (!file.exists())
 		{
@@ -106,11 +300,7 @@ public class DescriptorParser
 		
 		try
 		{
-			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setValidating(false);
-			factory.setIgnoringElementContentWhitespace(true);
-			factory.setIgnoringComments(true);
-			final Document document = factory.newDocumentBuilder().parse(file);
+			final Document document = readDocument(file);
 			for (Node defsNode = document.getFirstChild(); defsNode != null; defsNode = document.getNextSibling())
 			{
 				if (defsNode.getNodeName().equals("list"))
@@ -127,13 +317,13 @@ public class DescriptorParser
 							else
 							{
 								final String defName = nodeName.getNodeValue();
-								if (_enumMap.containsKey(defName))
+								if (enumMap.containsKey(defName))
 								{
 									LOGGER.log(Level.WARNING, ("parseEnum Node name duplicated [" + defName + "]  fileName: " + file.getName()));
 								}
 								
-								final Map<Integer, String> eTypes = _enumMap.computeIfAbsent(defName, m -> new HashMap<>());
-								final Map<String, String> eReverseTypes = _enumReverseMap.computeIfAbsent(defName, m -> new HashMap<>());
+								final Map<Integer, String> eTypes = enumMap.computeIfAbsent(defName, m -> new HashMap<>());
+								final Map<String, Integer> eReverseTypes = enumReverseMap.computeIfAbsent(defName, m -> new HashMap<>());
 								for (Node node = defNode.getFirstChild(); node != null; node = node.getNextSibling())
 								{
 									if (node.getNodeName().equals("node"))
@@ -149,7 +339,7 @@ public class DescriptorParser
 											LOGGER.log(Level.WARNING, ("parseEnum Node index duplicated [" + eIndex + "]  fileName: " + file.getName() + " name: " + defName));
 										}
 										eTypes.put(eIndex, eName);
-										eReverseTypes.put(eName, String.valueOf(eIndex));
+										eReverseTypes.put(eName, eIndex);
 									}
 								}
 							}
@@ -164,21 +354,22 @@ public class DescriptorParser
 		}
 	}
 	
-	private void parseDescriptor(File file)
+	/**
+	 * Reads the links and descriptors of a structure file, without touching the parser state.
+	 */
+	private StructureFile parseDescriptor(File file)
 	{
+		final StructureFile structure = new StructureFile(getStructureName(file));
 		if (!file.exists())
 		{
 			DebugUtil.debug("File " + file.getName() + " not found.");
-			return;
+			return structure;
 		}
 		
 		try
 		{
-			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setValidating(false);
-			factory.setIgnoringElementContentWhitespace(true);
-			factory.setIgnoringComments(true);
-			final Document document = factory.newDocumentBuilder().parse(file);
+			final Map<String, List<ParamNode>> definitions = getDefinitions();
+			final Document document = readDocument(file);
 			for (Node fileNode0 = document.getFirstChild(); fileNode0 != null; fileNode0 = document.getNextSibling())
 			{
 				if (fileNode0.getNodeName().equalsIgnoreCase("list"))
@@ -188,21 +379,14 @@ public class DescriptorParser
 						if (fileNode2.getNodeName().equalsIgnoreCase("link"))
 						{
 							final Node chronicleNode = fileNode0.getAttributes().getNamedItem("name");
-							final String dir = (chronicleNode != null) ? chronicleNode.getNodeValue() : file.getName().substring(0, file.getName().length() - 4);
+							final String dir = (chronicleNode != null) ? chronicleNode.getNodeValue() : structure.name;
 							final String namePattern = fileNode2.getAttributes().getNamedItem("pattern").getNodeValue();
 							final String linkFile = fileNode2.getAttributes().getNamedItem("file").getNodeValue();
 							final String linkVersion = fileNode2.getAttributes().getNamedItem("version").getNodeValue();
-							List<DescriptorLink> list = _links.get(dir);
-							if (list == null)
-							{
-								list = new ArrayList<>();
-							}
-							list.add(new DescriptorLink(dir, namePattern, linkFile, linkVersion));
-							_links.put(dir, list);
+							structure.links.add(new DescriptorLink(dir, namePattern, linkFile, linkVersion));
 						}
 						else if (fileNode2.getNodeName().equalsIgnoreCase("file"))
 						{
-							final String dir2 = file.getName().substring(0, file.getName().length() - 4);
 							final String namePattern2 = fileNode2.getAttributes().getNamedItem("pattern").getNodeValue();
 							final boolean isRawData = parseBoolNode(fileNode2, "isRaw", false);
 							final boolean isSafePackage = parseBoolNode(fileNode2, "isSafePackage", false);
@@ -210,30 +394,12 @@ public class DescriptorParser
 							
 							DebugUtil.debug("Boot of parsing file: " + namePattern2);
 							
-							final List<ParamNode> nodes = parseNodes(fileNode2, false, new HashSet<>(), dir2 + "->" + namePattern2, Collections.emptyList());
+							final List<ParamNode> nodes = parseNodes(fileNode2, false, new HashSet<>(), structure.name + "->" + namePattern2, Collections.emptyList(), definitions);
 							final Descriptor desc = new Descriptor(file.getName(), namePattern2, nodes);
 							desc.setIsRawData(isRawData);
 							desc.setIsSafePackage(isSafePackage);
-							if (formatName != null)
-							{
-								final Object obj = Util.loadJavaClass(formatName, "./data/structure/format/");
-								if (obj == null)
-								{
-									LOGGER.log(Level.WARNING, ("Format src file '" + formatName + ".java' not found!"));
-								}
-								else if (obj instanceof FormatListener)
-								{
-									desc.setFormat((FormatListener) obj);
-								}
-							}
-							
-							Map<String, Descriptor> versions = _descriptors.get(dir2);
-							if (versions == null)
-							{
-								versions = new HashMap<>();
-							}
-							versions.put(namePattern2, desc);
-							_descriptors.put(dir2, versions);
+							structure.descriptors.add(desc);
+							structure.formatNames.add(formatName);
 							DebugUtil.debug("End of parsing file: " + namePattern2);
 						}
 					}
@@ -243,10 +409,13 @@ public class DescriptorParser
 		catch (Exception e)
 		{
 			LOGGER.log(Level.WARNING, e.getMessage(), e);
+			return structure;
 		}
+		structure.complete = true;
+		return structure;
 	}
 	
-	private List<ParamNode> parseNodes(Node fileNode, boolean isHideName, Set<String> names, String fileName, List<ParamNode> parentNodes) throws Exception
+	private List<ParamNode> parseNodes(Node fileNode, boolean isHideName, Set<String> names, String fileName, List<ParamNode> parentNodes, Map<String, List<ParamNode>> definitions) throws Exception
 	{
 		final Map<String, Integer> defsCounter = new HashMap<>();
 		final List<ParamNode> nodes = new LinkedList<>();
@@ -268,7 +437,7 @@ public class DescriptorParser
 						final ParamNode beginNode = new ParamNode(prevNode.getName(), ParamNodeType.ELSE, null);
 						beginNode.setParamIf(prevNode.getParamIf());
 						beginNode.setValIf(prevNode.getValIf());
-						beginNode.addSubNodes(parseNodes(node, false, names, fileName, nodes));
+						beginNode.addSubNodes(parseNodes(node, false, names, fileName, nodes, definitions));
 						final Node enumName = node.getAttributes().getNamedItem("enumName");
 						if (enumName != null)
 						{
@@ -288,7 +457,7 @@ public class DescriptorParser
 					if (nodeName.equalsIgnoreCase("node"))
 					{
 						final String type = node.getAttributes().getNamedItem("reader").getNodeValue();
-						if (_definitions.containsKey(type))
+						if (definitions.containsKey(type))
 						{
 							if (!defsCounter.containsKey(type))
 							{
@@ -299,7 +468,7 @@ public class DescriptorParser
 								defsCounter.put(type, defsCounter.get(type) + 1);
 							}
 							
-							final List<ParamNode> defNodes = _definitions.get(type);
+							final List<ParamNode> defNodes = definitions.get(type);
 							for (ParamNode defNode : defNodes)
 							{
 								final ParamNode copied = defNode.copy();
@@ -376,7 +545,7 @@ public class DescriptorParser
 						}
 						
 						beginNode2.setSkipWriteSize(skipWriteSize);
-						beginNode2.addSubNodes(parseNodes(node, false, names, fileName, nodes));
+						beginNode2.addSubNodes(parseNodes(node, false, names, fileName, nodes, definitions));
 						beginNode2.setCycleName(iteratorName);
 						nodes.add(beginNode2);
 						
@@ -412,7 +581,7 @@ public class DescriptorParser
 					else if (nodeName.equalsIgnoreCase("wrapper"))
 					{
 						final ParamNode beginNode = new ParamNode(entityName, ParamNodeType.WRAPPER, null);
-						beginNode.addSubNodes(parseNodes(node, true, names, fileName, nodes));
+						beginNode.addSubNodes(parseNodes(node, true, names, fileName, nodes, definitions));
 						final Node enumName = node.getAttributes().getNamedItem("enumName");
 						if (enumName != null)
 						{
@@ -446,7 +615,7 @@ public class DescriptorParser
 						final ParamNode beginNode3 = new ParamNode(entityName, ParamNodeType.IF, null);
 						beginNode3.setParamIf(paramName);
 						beginNode3.setValIf(vsl);
-						beginNode3.addSubNodes(parseNodes(node, false, names, fileName, nodes));
+						beginNode3.addSubNodes(parseNodes(node, false, names, fileName, nodes, definitions));
 						final Node enumName = node.getAttributes().getNamedItem("enumName");
 						if (enumName != null)
 						{
@@ -468,7 +637,7 @@ public class DescriptorParser
 						final ParamNode beginNode3 = new ParamNode(entityName, ParamNodeType.MASK, null);
 						beginNode3.setParamMask(paramName);
 						beginNode3.setValMask(value);
-						beginNode3.addSubNodes(parseNodes(node, false, names, fileName, nodes));
+						beginNode3.addSubNodes(parseNodes(node, false, names, fileName, nodes, definitions));
 						final Node enumName = node.getAttributes().getNamedItem("enumName");
 						if (enumName != null)
 						{
@@ -487,29 +656,11 @@ public class DescriptorParser
 	{
 		if (L2ClientDat.DEV_MODE)
 		{
-			reload();
+			reloadIfModified();
 		}
 		
-		final List<DescriptorLink> listDes = _links.get(dir);
-		if (listDes == null)
-		{
-			return null;
-		}
-		
-		for (DescriptorLink desc : listDes)
-		{
-			if (fileName.toLowerCase().matches(desc.getNamePattern().toLowerCase()) && _descriptors.containsKey(desc.getLinkFile()))
-			{
-				final Map<String, Descriptor> versions = _descriptors.get(desc.getLinkFile());
-				if (versions.containsKey(desc.getLinkVersion()))
-				{
-					return versions.get(desc.getLinkVersion());
-				}
-				continue;
-			}
-		}
-		
-		return null;
+		final LinkIndex index = _linkIndexes.get(dir);
+		return (index == null) ? null : index.find(fileName);
 	}
 	
 	private boolean parseBoolNode(Node node, String name, boolean def)
@@ -534,13 +685,14 @@ public class DescriptorParser
 	
 	public String getEnumNameByIndex(String eName, int index)
 	{
-		if (!_enumMap.containsKey(eName))
+		final EnumTable table = _enums.get(eName);
+		if (table == null)
 		{
 			LOGGER.log(Level.WARNING, ("Enum [" + eName + "] enum not found! index: " + index));
 			return String.valueOf(index);
 		}
 		
-		final String result = _enumMap.get(eName).get(index);
+		final String result = table.getName(index);
 		if (result == null)
 		{
 			LOGGER.log(Level.WARNING, ("Enum [" + eName + "] Enum var not found! var: " + index));
@@ -552,38 +704,69 @@ public class DescriptorParser
 	
 	public String getEnumNameByName(String eName, String index)
 	{
-		if (!_enumReverseMap.containsKey(eName))
+		final EnumTable table = _enums.get(eName);
+		if (table == null)
 		{
 			LOGGER.log(Level.WARNING, ("Enum [" + eName + "] enum not found! index: " + index));
 			return index;
 		}
 		
-		final String result = _enumReverseMap.get(eName).get(index);
-		if (result == null)
+		final int result = table.getIndex(index);
+		if (result == EnumTable.MISSING)
 		{
 			LOGGER.log(Level.WARNING, ("Enum [" + eName + "] Enum var not found! var: " + index));
 			return index;
 		}
 		
-		return result;
+		return String.valueOf(result);
+	}
+	
+	/**
+	 * @param eName the enum name
+	 * @return the indexes declared by the enum, empty if it does not exist
+	 */
+	Set<Integer> getEnumIndexes(String eName)
+	{
+		final EnumTable table = _enums.get(eName);
+		return (table == null) ? Collections.emptySet() : table.getIndexes();
 	}
 	
 	public Set<String> getChronicleNames()
 	{
 		if (L2ClientDat.DEV_MODE)
 		{
-			reload();
+			reloadIfModified();
 		}
 		
 		return _links.keySet();
 	}
 	
-	private void reload()
+	/**
+	 * Parses the files again when one of them was added, removed or saved since the last parse.
+	 */
+	private void reloadIfModified()
 	{
-		_descriptors.clear();
-		_definitions.clear();
-		_links.clear();
-		parse();
+		if (getFilesStamp() != _filesStamp)
+		{
+			parse();
+		}
+	}
+	
+	private static long getFilesStamp()
+	{
+		final List<File> files = new ArrayList<>();
+		files.add(new File("./data/definitions.xml"));
+		files.addAll(Util.loadFiles("./data/enums/", ".xml"));
+		files.addAll(Util.loadFiles("./data/structure/", ".xml"));
+		files.addAll(Util.loadFiles("./data/structure/format/", ".java"));
+		long stamp = files.size();
+		for (File file : files)
+		{
+			stamp = (31 * stamp) + file.getPath().hashCode();
+			stamp = (31 * stamp) + file.lastModified();
+			stamp = (31 * stamp) + file.length();
+		}
+		return stamp;
 	}
 	
 	public static DescriptorParser getInstance()
@@ -591,6 +774,21 @@ public class DescriptorParser
 		return SingletonHolder.INSTANCE;
 	}
 	
+	static class StructureFile
+	{
+		final String name;
+		final List<DescriptorLink> links = new ArrayList<>();
+		final List<Descriptor> descriptors = new ArrayList<>();
+		final List<String> formatNames = new ArrayList<>();
+		/** False when the file could not be read or parsed to the end, such a result is not cached. */
+		boolean complete;
+		
+		StructureFile(String name)
+		{
+			this.name = name;
+		}
+	}
+	
 	private static class SingletonHolder
 	{
 		protected static final DescriptorParser INSTANCE = new DescriptorParser();
@@ -0,0 +1,284 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A descriptor compiled once into arrays of pre-resolved steps.<br>
+ * Everything the reader and the writer used to derive from the {@link ParamNode} tree for each record (entity type checks, value counts, cycle markers and the text around values) is computed here when the plan is built.<br>
+ * Every parameter name is also given a slot, so values are kept in {@link Registers} and {@link TextRecords} instead of maps keyed by name.
+ */
+final class DescriptorPlan
+{
+	static final int IF = 0;
+	static final int ELSE = 1;
+	static final int MASK = 2;
+	static final int WRAPPER = 3;
+	static final int CYCLE = 4;
+	static final int CONSTANT = 5;
+	static final int VARIABLE = 6;
+	
+	private final Block _root;
+	private final String[] _slotNames;
+	/** Open addressing table of slot + 1 by name hash, for looking up names inside the packed text. */
+	private final int[] _slotTable;
+	
+	DescriptorPlan(List<ParamNode> nodes)
+	{
+		final Map<String, Integer> slots = new HashMap<>();
+		_root = new Block(nodes, slots);
+		_slotNames = new String[slots.size()];
+		_slotTable = new int[Integer.highestOneBit(Math.max(1, slots.size()) * 4)];
+		for (Map.Entry<String, Integer> entry : slots.entrySet())
+		{
+			final int slot = entry.getValue();
+			_slotNames[slot] = entry.getKey();
+			int index = mix(entry.getKey().hashCode()) & (_slotTable.length - 1);
+			while (_slotTable[index] != 0)
+			{
+				index = (index + 1) & (_slotTable.length - 1);
+			}
+			_slotTable[index] = slot + 1;
+		}
+	}
+	
+	Block getRoot()
+	{
+		return _root;
+	}
+	
+	Registers newRegisters()
+	{
+		return new Registers(_slotNames.length);
+	}
+	
+	int getSlotCount()
+	{
+		return _slotNames.length;
+	}
+	
+	/**
+	 * @return the slot of the name written in {@code text[start, end)}, or -1 if the descriptor never refers to it
+	 */
+	int findSlot(char[] text, int start, int end)
+	{
+		int hash = 0;
+		for (int i = start; i < end; i++)
+		{
+			hash = (31 * hash) + text[i];
+		}
+		
+		final int mask = _slotTable.length - 1;
+		for (int index = mix(hash) & mask; _slotTable[index] != 0; index = (index + 1) & mask)
+		{
+			final String name = _slotNames[_slotTable[index] - 1];
+			if (name.length() == (end - start))
+			{
+				int i = 0;
+				while ((i < name.length()) && (name.charAt(i) == text[start + i]))
+				{
+					++i;
+				}
+				if (i == name.length())
+				{
+					return _slotTable[index] - 1;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	private static int mix(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+	
+	private static int slotOf(String name, Map<String, Integer> slots)
+	{
+		if (name == null)
+		{
+			return -1;
+		}
+		
+		Integer slot = slots.get(name);
+		if (slot == null)
+		{
+			slot = slots.size();
+			slots.put(name, slot);
+		}
+		return slot;
+	}
+	
+	/**
+	 * The compiled nodes of one level of the tree.
+	 */
+	static final class Block
+	{
+		final Step[] steps;
+		/** Nodes that are not iterators, used by the reader to decide if a hidden record needs braces. */
+		final int valueCount;
+		/** Value nodes that are not cycles, used by the writer to decide if a hidden cycle record must be split. */
+		final int plainParamCount;
+		final int cycleCount;
+		
+		Block(List<ParamNode> nodes, Map<String, Integer> slots)
+		{
+			steps = new Step[nodes.size()];
+			int values = 0;
+			int plainParams = 0;
+			int cycles = 0;
+			for (int i = 0; i < steps.length; i++)
+			{
+				final Step step = new Step(nodes.get(i), slots);
+				steps[i] = step;
+				if (!step.iterator)
+				{
+					++values;
+				}
+				if (step.op == CYCLE)
+				{
+					++cycles;
+				}
+				else if (!step.iterator)
+				{
+					++plainParams;
+				}
+			}
+			valueCount = values;
+			plainParamCount = plainParams;
+			cycleCount = cycles;
+		}
+	}
+	
+	/**
+	 * A single compiled node.
+	 */
+	static final class Step
+	{
+		final ParamNode node;
+		final int op;
+		final ParamType type;
+		final String name;
+		final boolean iterator;
+		final boolean nameHidden;
+		final boolean skipWriteSize;
+		final int size;
+		final String cycleName;
+		final String paramIf;
+		final String valIf;
+		final String paramMask;
+		final int valMask;
+		/** The slot of the value of a variable, a wrapper or a cycle, -1 for other nodes. */
+		final int slot;
+		final int cycleSlot;
+		final int ifSlot;
+		final int maskSlot;
+		/** Whether the if value is the plain text of an integer, so it can be compared without formatting the register. */
+		final boolean valIfIntegral;
+		final long valIfLong;
+		/** Whether the reader writes "name=" before the value when the record is not hidden. */
+		final boolean namedValue;
+		/** Whether the value is separated from the next one inside a hidden record. */
+		final boolean separated;
+		final String constantText;
+		final String beginText;
+		final String endText;
+		/** The token closing a record of a named cycle in the packed text. */
+		final String endMarker;
+		final Block sub;
+		
+		Step(ParamNode paramNode, Map<String, Integer> slots)
+		{
+			node = paramNode;
+			op = opOf(paramNode.getEntityType());
+			type = paramNode.getType();
+			name = paramNode.getName();
+			iterator = paramNode.isIterator();
+			nameHidden = paramNode.isNameHidden();
+			skipWriteSize = paramNode.isSkipWriteSize();
+			size = paramNode.getSize();
+			cycleName = paramNode.getCycleName();
+			paramIf = paramNode.getParamIf();
+			valIf = paramNode.getValIf();
+			paramMask = paramNode.getParamMask();
+			valMask = paramNode.getValMask();
+			slot = ((op == VARIABLE) || (op == WRAPPER) || (op == CYCLE)) ? slotOf(name, slots) : -1;
+			cycleSlot = ((op == CYCLE) && (size < 0)) ? slotOf(cycleName, slots) : -1;
+			ifSlot = ((op == IF) || (op == ELSE)) ? slotOf(paramIf, slots) : -1;
+			maskSlot = (op == MASK) ? slotOf(paramMask, slots) : -1;
+			valIfLong = ((op == IF) || (op == ELSE)) ? parseIntegral(valIf) : 0;
+			valIfIntegral = ((op == IF) || (op == ELSE)) && String.valueOf(valIfLong).equals(valIf);
+			namedValue = !iterator && (op != CONSTANT) && ((op == WRAPPER) || nameHidden);
+			separated = !iterator && (op != CONSTANT);
+			constantText = (op == CONSTANT) ? name.replace("\\t", "\t").replace("\\r\\n", "\r\n") : null;
+			beginText = (op == CYCLE) ? name.concat("_begin") : null;
+			endText = (op == CYCLE) ? name.concat("_end\r\n") : null;
+			endMarker = (op == CYCLE) ? name.concat("_end") : null;
+			sub = (paramNode.getSubNodes() != null) ? new Block(paramNode.getSubNodes(), slots) : null;
+		}
+		
+		private static long parseIntegral(String text)
+		{
+			try
+			{
+				return Long.parseLong(text);
+			}
+			catch (NumberFormatException e)
+			{
+				return 0;
+			}
+		}
+		
+		private static int opOf(ParamNodeType entityType)
+		{
+			switch (entityType)
+			{
+				case IF:
+				{
+					return IF;
+				}
+				case ELSE:
+				{
+					return ELSE;
+				}
+				case MASK:
+				{
+					return MASK;
+				}
+				case WRAPPER:
+				{
+					return WRAPPER;
+				}
+				case FOR:
+				{
+					return CYCLE;
+				}
+				case CONSTANT:
+				{
+					return CONSTANT;
+				}
+				default:
+				{
+					return VARIABLE;
+				}
+			}
+		}
+	}
+}
@@ -17,11 +17,10 @@
 package org.l2jmobius.xml;
 
 import java.io.File;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteOrder;
 
 import org.l2jmobius.L2ClientDat;
 import org.l2jmobius.actions.ActionTask;
@@ -29,8 +28,11 @@ import org.l2jmobius.clientcryptor.crypt.DatCrypter;
 import org.l2jmobius.config.ConfigDebug;
 import org.l2jmobius.config.ConfigWindow;
 import org.l2jmobius.data.GameDataName;
+import org.l2jmobius.listeners.RecordFormatListener;
 import org.l2jmobius.util.ByteReader;
 import org.l2jmobius.util.DebugUtil;
+import org.l2jmobius.xml.DescriptorPlan.Block;
+import org.l2jmobius.xml.DescriptorPlan.Step;
 
 public class DescriptorReader
 {
@@ -46,9 +48,10 @@ public class DescriptorReader
 	
 	public String parseData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, Descriptor desc, ByteBuffer data, boolean mass) throws Exception
 	{
+		data.order(ByteOrder.LITTLE_ENDIAN);
 		boolean error = false;
 		double progress = actionTask.getCurrentProgress();
-		final boolean hasFormatter = (desc.getFormat() != null) && !ConfigWindow.CURRENT_FORMATTER.equalsIgnoreCase("Disabled");
+		final boolean hasFormatter = hasFormatter(desc);
 		String stringData;
 		if (desc.isRawData())
 		{
@@ -58,16 +61,17 @@ public class DescriptorReader
 			}
 			
 			progress = actionTask.addProgress(progress, hasFormatter ? 20.0 : 49.0, weight);
-			final StringBuilder builder = new StringBuilder();
-			final ParamNode node = desc.getNodes().get(0);
-			if (!readVariables(currentFile, crypter, node, new HashMap<>(), data, builder, true, mass))
+			final TextSink builder = new TextSink(null);
+			final DescriptorPlan plan = desc.getPlan();
+			final Step step = plan.getRoot().steps[0];
+			if (!readVariables(currentFile, crypter, step, plan.newRegisters(), data, builder, true, mass))
 			{
 				if (mass)
 				{
 					return null;
 				}
 				
-				final String errorMsg = stringData = String.format("Error while parsing variable NAME[%s] TYPE[%s] in file NAME[%s]! Parsed data: %s", node.getName(), node.getType(), currentFile.getName(), builder);
+				final String errorMsg = stringData = String.format("Error while parsing variable NAME[%s] TYPE[%s] in file NAME[%s]! Parsed data: %s", step.name, step.type, currentFile.getName(), builder);
 				L2ClientDat.addLogConsole(errorMsg, true);
 			}
 			else
@@ -78,27 +82,18 @@ public class DescriptorReader
 		}
 		else
 		{
-			final Map<String, Variant> vars = new HashMap<>();
-			final Data result = parseData(actionTask, actionTask.getWeightValue(69.0, weight), currentFile, crypter, data, null, desc.getNodes(), 1, vars, false, 0, mass);
-			if (result != null)
-			{
-				stringData = result.data.toString().trim();
-				error = result.error;
-			}
-			else
-			{
-				stringData = "";
-				error = true;
-			}
-			
+			final TextSink out = new TextSink(null);
+			final DescriptorPlan plan = desc.getPlan();
+			error = parseData(actionTask, actionTask.getWeightValue(69.0, weight), currentFile, crypter, data, out, null, plan.getRoot(), 1, plan.newRegisters(), false, 0, mass);
 			if (actionTask.isCancelled())
 			{
 				return null;
 			}
 			
+			stringData = out.toString().trim();
 			progress = actionTask.addProgress(progress, 69.0, weight);
 		}
-		if (!error && (desc.getFormat() != null) && !ConfigWindow.CURRENT_FORMATTER.equalsIgnoreCase("Disabled"))
+		if (!error && hasFormatter)
 		{
 			stringData = desc.getFormat().decode(actionTask, actionTask.getWeightValue(30.0, weight), stringData);
 			if (actionTask.isCancelled())
@@ -109,24 +104,94 @@ public class DescriptorReader
 			progress = actionTask.addProgress(progress, 30.0, weight);
 		}
 		actionTask.addProgress(progress, 1.0, weight);
+		if (!checkEnd(desc, data, mass))
+		{
+			return null;
+		}
+		return stringData;
+	}
+	
+	/**
+	 * Reads a file like {@link #parseData(ActionTask, double, File, DatCrypter, Descriptor, ByteBuffer, boolean)}, but writes its text to a writer.<br>
+	 * Records are written while they are read, so the whole text is never held in memory. Formatted records go through a {@link RecordFormatListener} on the way.<br>
+	 * Raw data and formatters working on the whole text still need the whole text and are written at once.
+	 * @return the number of chars written, or -1 if the file could not be read
+	 */
+	public long parseData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, Descriptor desc, ByteBuffer data, boolean mass, Writer writer) throws Exception
+	{
+		final boolean hasFormatter = hasFormatter(desc);
+		if (desc.isRawData() || (hasFormatter && !(desc.getFormat() instanceof RecordFormatListener)))
+		{
+			final String text = parseData(actionTask, weight, currentFile, crypter, desc, data, mass);
+			if (text == null)
+			{
+				return -1;
+			}
+			
+			writer.write(text);
+			return text.length();
+		}
+		
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		double progress = actionTask.getCurrentProgress();
+		final RecordFormatWriter formatWriter = hasFormatter ? new RecordFormatWriter(((RecordFormatListener) desc.getFormat()).newDecoder(), writer) : null;
+		final TextSink out = new TextSink((formatWriter != null) ? formatWriter : writer);
+		final DescriptorPlan plan = desc.getPlan();
+		final boolean error = parseData(actionTask, actionTask.getWeightValue(69.0, weight), currentFile, crypter, data, out, null, plan.getRoot(), 1, plan.newRegisters(), false, 0, mass);
+		if (actionTask.isCancelled() || (error && mass))
+		{
+			return -1;
+		}
+		
+		progress = actionTask.addProgress(progress, 69.0, weight);
+		if (!checkEnd(desc, data, mass))
+		{
+			return -1;
+		}
+		
+		// Like the text of a failed read, the records of a failed read are not formatted.
+		long written = out.finish();
+		if ((formatWriter != null) && !error)
+		{
+			written = formatWriter.finish();
+			progress = actionTask.addProgress(progress, 30.0, weight);
+		}
+		actionTask.addProgress(progress, 1.0, weight);
+		return written;
+	}
+	
+	private static boolean hasFormatter(Descriptor desc)
+	{
+		return (desc.getFormat() != null) && !ConfigWindow.CURRENT_FORMATTER.equalsIgnoreCase("Disabled");
+	}
+	
+	/**
+	 * @return {@code false} if a mass read stopped before the end of the data
+	 */
+	private static boolean checkEnd(Descriptor desc, ByteBuffer data, boolean mass)
+	{
 		final int pos = desc.isSafePackage() ? (data.position() + 13) : data.position();
 		if (data.limit() > pos)
 		{
 			if (mass)
 			{
-				return null;
+				return false;
 			}
 			
 			L2ClientDat.addLogConsole("Unpacked not full " + data.position() + "/" + data.limit() + " diff: " + (data.limit() - pos), true);
 		}
-		return stringData;
+		return true;
 	}
 	
-	private Data parseData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, ByteBuffer data, ParamNode lastNode, List<ParamNode> nodes, int cycleSize, Map<String, Variant> vars, boolean isNameHidden, int cycleNameLevel, boolean mass) throws Exception
+	/**
+	 * Reads the records of a block straight into the output.
+	 * @return {@code true} if a value could not be read
+	 */
+	private boolean parseData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, ByteBuffer data, TextSink out, Step lastStep, Block block, int cycleSize, Registers registers, boolean isNameHidden, int cycleNameLevel, boolean mass) throws Exception
 	{
 		if (cycleSize <= 0)
 		{
-			return null;
+			return false;
 		}
 		
 		if (cycleSize > 1000000)
@@ -134,37 +199,30 @@ public class DescriptorReader
 			throw new Exception("To much data.");
 		}
 		
-		final Data result = new Data();
-		final StringBuilder out = result.data;
+		final long start = out.length();
+		boolean error = false;
+		final Step[] steps = block.steps;
+		final int nodeSize = steps.length;
+		final boolean isAddCycleName = !isNameHidden && (lastStep != null) && (lastStep.op == DescriptorPlan.CYCLE);
+		final boolean isBraced = isNameHidden && (block.valueCount > 1);
 		for (int i = 0; i < cycleSize; ++i)
 		{
 			if (actionTask.isCancelled())
 			{
-				return null;
+				return false;
 			}
 			
-			final boolean isAddCycleName = !isNameHidden && (lastNode != null) && lastNode.getEntityType().isCycle();
 			if (isAddCycleName)
 			{
 				for (int k = 0; k < cycleNameLevel; ++k)
 				{
 					out.append(TAB);
 				}
-				out.append(lastNode.getName().concat("_begin"));
+				out.append(lastStep.beginText);
 				++cycleNameLevel;
 			}
 			
-			final int nodeSize = nodes.size();
-			int nNode = 0;
-			for (ParamNode n : nodes)
-			{
-				if (!n.isIterator())
-				{
-					++nNode;
-				}
-			}
-			
-			if (isNameHidden && (nNode > 1))
+			if (isBraced)
 			{
 				out.append("{");
 			}
@@ -175,164 +233,123 @@ public class DescriptorReader
 			{
 				if (actionTask.isCancelled())
 				{
-					return null;
+					return false;
 				}
 				
-				final ParamNode node = nodes.get(j);
-				if (node.getEntityType().isIf())
+				final Step step = steps[j];
+				if (step.op <= DescriptorPlan.MASK)
 				{
-					final Variant variant = vars.get(node.getParamIf());
-					if ((variant != null) && variant.toString().equalsIgnoreCase(node.getValIf()))
+					final boolean matched;
+					if (step.op == DescriptorPlan.MASK)
 					{
-						final Data dataResult = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, null, node.getSubNodes(), 1, vars, isNameHidden, cycleNameLevel, mass);
-						if (dataResult != null)
-						{
-							out.append(dataResult.data);
-							if (dataResult.error)
-							{
-								result.error = true;
-								break;
-							}
-						}
+						matched = registers.isSet(step.maskSlot) && ((registers.getMask(step.maskSlot) & step.valMask) == step.valMask);
 					}
-				}
-				else if (node.getEntityType().isElse())
-				{
-					final Variant variant = vars.get(node.getParamIf());
-					if ((variant != null) && !variant.toString().equalsIgnoreCase(node.getValIf()))
+					else
 					{
-						final Data dataResult = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, null, node.getSubNodes(), 1, vars, isNameHidden, cycleNameLevel, mass);
-						if (dataResult != null)
-						{
-							out.append(dataResult.data);
-							if (dataResult.error)
-							{
-								result.error = true;
-								break;
-							}
-						}
+						matched = registers.isSet(step.ifSlot) && (equalsIf(registers, step) == (step.op == DescriptorPlan.IF));
 					}
-				}
-				else if (node.getEntityType().isMask())
-				{
-					final Variant variant = vars.get(node.getParamMask());
-					if (variant != null)
+					
+					if (matched && parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, out, null, step.sub, 1, registers, isNameHidden, cycleNameLevel, mass))
 					{
-						final int value = Integer.parseInt(variant.toString());
-						if ((value & node.getValMask()) == node.getValMask())
-						{
-							final Data dataResult2 = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, null, node.getSubNodes(), 1, vars, isNameHidden, cycleNameLevel, mass);
-							if (dataResult2 != null)
-							{
-								out.append(dataResult2.data);
-								if (dataResult2.error)
-								{
-									result.error = true;
-									break;
-								}
-							}
-						}
+						error = true;
+						break;
 					}
 				}
 				else
 				{
-					if (!node.isIterator() && !node.getEntityType().isConstant() && !isNameHidden && (node.getEntityType().isWrapper() || node.isNameHidden()))
+					if (step.namedValue && !isNameHidden)
 					{
-						out.append(TAB).append(node.getName()).append(EQ);
+						out.append(TAB).append(step.name).append(EQ);
 					}
-					if (node.getEntityType().isWrapper())
-					{
-						final Data dataResult3 = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, null, node.getSubNodes(), 1, vars, true, cycleNameLevel, mass);
-						if (dataResult3 != null)
-						{
-							out.append(dataResult3.data);
-							if (dataResult3.error)
-							{
-								result.error = true;
-								break;
-							}
-						}
-					}
-					else if (node.getEntityType().isCycle())
+					
+					switch (step.op)
 					{
-						int size;
-						if (node.getSize() >= 0)
+						case DescriptorPlan.WRAPPER:
 						{
-							size = node.getSize();
+							error = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, out, null, step.sub, 1, registers, true, cycleNameLevel, mass);
+							break;
 						}
-						else
+						case DescriptorPlan.CYCLE:
 						{
-							final Variant var2 = vars.get(node.getCycleName());
-							if (var2.isInt())
+							int size;
+							if (step.size >= 0)
 							{
-								size = var2.getInt();
+								size = step.size;
 							}
 							else
 							{
-								if (!var2.isShort())
+								if (registers.isInt(step.cycleSlot) || registers.isShort(step.cycleSlot))
+								{
+									size = registers.getInt(step.cycleSlot);
+								}
+								else
 								{
-									throw new Exception("Wrong cycle variable format for cycle: " + node.getName() + " iterator: " + node.getCycleName());
+									throw new Exception("Wrong cycle variable format for cycle: " + step.name + " iterator: " + step.cycleName);
 								}
-								size = var2.getShort();
 							}
+							if (step.nameHidden)
+							{
+								out.append("{");
+							}
+							
+							error = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, out, step, step.sub, size, registers, step.nameHidden, cycleNameLevel, mass);
+							if (error)
+							{
+								break;
+							}
+							
+							if (step.nameHidden)
+							{
+								out.append("}");
+							}
+							break;
 						}
-						if (node.isNameHidden())
+						case DescriptorPlan.CONSTANT:
 						{
-							out.append("{");
+							out.append(step.constantText);
+							break;
 						}
-						
-						final Data dataResult = parseData(actionTask, actionTask.getWeightValue(progressWeight, weight), currentFile, crypter, data, node, node.getSubNodes(), size, vars, node.isNameHidden(), cycleNameLevel, mass);
-						if (dataResult != null)
+						default:
 						{
-							out.append(dataResult.data);
-							if (dataResult.error)
+							if (!readVariables(currentFile, crypter, step, registers, data, out, false, mass))
 							{
-								result.error = true;
-								break;
+								if (!mass)
+								{
+									L2ClientDat.addLogConsole(String.format("Error while parsing variable NAME[%s] TYPE[%s] in file NAME[%s]! Parsed data: %s", step.name, step.type, currentFile.getName(), out.tail(start)), true);
+								}
+								
+								error = true;
 							}
-						}
-						
-						if (node.isNameHidden())
-						{
-							out.append("}");
+							break;
 						}
 					}
-					else if (node.getEntityType().isConstant())
-					{
-						out.append(node.getName().replace("\\t", TAB).replace("\\r\\n", "\r\n"));
-					}
-					else if (node.getEntityType().isVariable() && !readVariables(currentFile, crypter, node, vars, data, out, false, mass))
+					
+					if (error)
 					{
-						if (!mass)
-						{
-							L2ClientDat.addLogConsole(String.format("Error while parsing variable NAME[%s] TYPE[%s] in file NAME[%s]! Parsed data: %s", node.getName(), node.getType(), currentFile.getName(), out.toString()), true);
-						}
-						
-						result.error = true;
 						break;
 					}
 					
-					if (!node.isIterator() && !node.getEntityType().isConstant() && isNameHidden && (j != (nodeSize - 1)))
+					if (step.separated && isNameHidden && (j != (nodeSize - 1)))
 					{
 						out.append(SEMI);
 					}
 					
-					if (vars.containsKey(node.getName()))
+					if (ConfigDebug.DAT_DEBUG_POS && registers.isSet(step.slot))
 					{
-						DebugUtil.debugPos(data.position(), node.getName(), vars.get(node.getName()));
+						DebugUtil.debugPos(data.position(), step.name, registers.toString(step.slot));
 					}
 				}
 				
 				if (actionTask.isCancelled())
 				{
-					return null;
+					return false;
 				}
 				
 				actionTask.addProgress(progress, progressWeight, weight);
 			}
 			if (isNameHidden)
 			{
-				if (nNode > 1)
+				if (isBraced)
 				{
 					out.append("}");
 				}
@@ -343,145 +360,167 @@ public class DescriptorReader
 			}
 			if (isAddCycleName)
 			{
-				if (out.charAt(out.length() - 1) != '\n')
+				if (out.lastChar() != '\n')
 				{
 					out.append(TAB);
 				}
-				out.append(lastNode.getName()).append("_end\r\n");
+				out.append(lastStep.endText);
 				--cycleNameLevel;
 			}
 			
-			if (result.error)
+			if (error)
 			{
 				break;
 			}
 		}
-		return result;
+		return error;
 	}
 	
-	private boolean readVariables(File currentFile, DatCrypter crypter, ParamNode node, Map<String, Variant> vars, ByteBuffer data, StringBuilder out, boolean isRaw, boolean mass)
+	/**
+	 * Compares an if/else value the way its text would compare, without formatting integral registers.
+	 */
+	private static boolean equalsIf(Registers registers, Step step)
+	{
+		if (registers.isIntegral(step.ifSlot))
+		{
+			return step.valIfIntegral && (registers.getLong(step.ifSlot) == step.valIfLong);
+		}
+		return registers.toString(step.ifSlot).equalsIgnoreCase(step.valIf);
+	}
+	
+	/**
+	 * @return the name of an enum value, from the table bound to the node when it declares the value
+	 */
+	private static String getEnumName(ParamNode node, int value)
+	{
+		final EnumTable table = node.getEnumTable();
+		final String name = (table != null) ? table.getName(value) : null;
+		return (name != null) ? name : DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value);
+	}
+	
+	private boolean readVariables(File currentFile, DatCrypter crypter, Step step, Registers registers, ByteBuffer data, TextSink out, boolean isRaw, boolean mass)
 	{
 		try
 		{
-			switch (node.getType())
+			switch (step.type)
 			{
 				case UCHAR:
 				{
 					final short value = (byte) ByteReader.readChar(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Short.class));
+					registers.setShort(step.slot, value);
 					break;
 				}
 				case UBYTE:
 				{
 					final int value = ByteReader.readUByte(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Integer.class));
+					registers.setInt(step.slot, value);
 					break;
 				}
 				case SHORT:
 				{
 					final short value = ByteReader.readShort(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Short.class));
+					registers.setShort(step.slot, value);
 					break;
 				}
 				case USHORT:
 				{
 					final int value = ByteReader.readShort(data) & 0xFFFF;
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Integer.class));
+					registers.setInt(step.slot, value);
 					break;
 				}
 				case UINT:
 				{
 					final int value = ByteReader.readUInt(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Integer.class));
+					registers.setInt(step.slot, value);
 					break;
 				}
 				case INT:
 				{
 					final int value = ByteReader.readInt(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Integer.class));
+					registers.setInt(step.slot, value);
 					break;
 				}
 				case CNTR:
 				{
 					final int value = ByteReader.readCompactInt(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
-						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
+						if (ConfigDebug.DAT_REPLACEMENT_ENUMS && step.node.isEnum())
 						{
-							out.append(DescriptorParser.getInstance().getEnumNameByIndex(node.getEnumName(), value));
+							out.append(getEnumName(step.node, value));
 						}
 						else
 						{
 							out.append(value);
 						}
 					}
-					vars.put(node.getName(), new Variant(value, Integer.class));
+					registers.setInt(step.slot, value);
 					break;
 				}
 				case UNICODE:
@@ -489,13 +528,13 @@ public class DescriptorReader
 					final String str = ByteReader.readUtfString(data, isRaw);
 					if (!isRaw)
 					{
-						if (!node.isIterator())
+						if (!step.iterator)
 						{
 							out.append(LB);
 							out.append(str);
 							out.append(RB);
 						}
-						vars.put(node.getName(), new Variant(str, String.class));
+						registers.setString(step.slot, str);
 						break;
 					}
 					
@@ -507,13 +546,13 @@ public class DescriptorReader
 					final String str = ByteReader.readString(data, isRaw);
 					if (!isRaw)
 					{
-						if (!node.isIterator())
+						if (!step.iterator)
 						{
 							out.append(LB);
 							out.append(str);
 							out.append(RB);
 						}
-						vars.put(node.getName(), new Variant(str, String.class));
+						registers.setString(step.slot, str);
 						break;
 					}
 					
@@ -523,57 +562,57 @@ public class DescriptorReader
 				case DOUBLE:
 				{
 					final double value3 = ByteReader.readDouble(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						out.append(new BigDecimal(Double.toString(value3)).toPlainString());
 					}
-					vars.put(node.getName(), new Variant(value3, Double.class));
+					registers.setDouble(step.slot, value3);
 					break;
 				}
 				case FLOAT:
 				{
 					final float value4 = ByteReader.readFloat(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						out.append(value4);
 					}
-					vars.put(node.getName(), new Variant(value4, Float.class));
+					registers.setFloat(step.slot, value4);
 					break;
 				}
 				case LONG:
 				{
 					final long value5 = ByteReader.readLong(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						out.append(value5);
 					}
-					vars.put(node.getName(), new Variant(value5, Long.class));
+					registers.setLong(step.slot, value5);
 					break;
 				}
 				case RGBA:
 				{
 					final String value6 = ByteReader.readRGBA(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						out.append(value6);
 					}
-					vars.put(node.getName(), new Variant(value6, String.class));
+					registers.setString(step.slot, value6);
 					break;
 				}
 				case RGB:
 				{
 					final String value6 = ByteReader.readRGB(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						out.append(value6);
 					}
-					vars.put(node.getName(), new Variant(value6, String.class));
+					registers.setString(step.slot, value6);
 					break;
 				}
 				case HEX:
 				{
 					final int value2 = ByteReader.readUByte(data);
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						String hex = Integer.toHexString(value2).toUpperCase();
 						if (hex.length() == 1)
@@ -582,7 +621,7 @@ public class DescriptorReader
 						}
 						out.append(hex);
 					}
-					vars.put(node.getName(), new Variant(value2, Integer.class));
+					registers.setInt(step.slot, value2);
 					break;
 				}
 				case MAP_INT:
@@ -591,18 +630,18 @@ public class DescriptorReader
 					if (ConfigDebug.DAT_REPLACEMENT_NAMES)
 					{
 						final String paramName = GameDataName.getInstance().getString(currentFile, crypter, index, mass);
-						if (!node.isIterator())
+						if (!step.iterator)
 						{
 							out.append(paramName);
 						}
-						vars.put(node.getName(), new Variant(paramName, String.class));
+						registers.setString(step.slot, paramName);
 						break;
 					}
-					if (!node.isIterator())
+					if (!step.iterator)
 					{
 						out.append(index);
 					}
-					vars.put(node.getName(), new Variant(index, Integer.class));
+					registers.setInt(step.slot, index);
 					break;
 				}
 				default:
@@ -619,18 +658,6 @@ public class DescriptorReader
 		return true;
 	}
 	
-	private static class Data
-	{
-		public final StringBuilder data;
-		public boolean error;
-		
-		protected Data()
-		{
-			data = new StringBuilder();
-			error = false;
-		}
-	}
-	
 	public static DescriptorReader getInstance()
 	{
 		return SingletonHolder.INSTANCE;
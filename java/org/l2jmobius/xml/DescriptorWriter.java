@@ -16,29 +16,30 @@
  */
 package org.l2jmobius.xml;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.l2jmobius.actions.ActionTask;
 import org.l2jmobius.clientcryptor.crypt.DatCrypter;
 import org.l2jmobius.config.ConfigDebug;
 import org.l2jmobius.config.ConfigWindow;
 import org.l2jmobius.data.GameDataName;
-import org.l2jmobius.util.ByteWriter;
+import org.l2jmobius.listeners.RecordFormatListener;
+import org.l2jmobius.util.ByteSink;
 import org.l2jmobius.util.Util;
+import org.l2jmobius.xml.DescriptorPlan.Block;
+import org.l2jmobius.xml.DescriptorPlan.Step;
 import org.l2jmobius.xml.exceptions.CycleArgumentException;
 import org.l2jmobius.xml.exceptions.PackDataException;
+import org.l2jmobius.xml.exceptions.UnknownNameException;
 
 public class DescriptorWriter
 {
@@ -61,127 +62,187 @@ public class DescriptorWriter
 		0
 	};
 	
+	/** Sink reused by the files packed on a thread. */
+	private static final ThreadLocal<ByteSink> SINKS = ThreadLocal.withInitial(ByteSink::new);
+	
 	public static byte[] parseData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, Descriptor desc, String data, boolean mass) throws Exception
 	{
-		final ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length() / 2);
-		double progress = actionTask.getCurrentProgress();
-		if ((desc.getFormat() != null) && !ConfigWindow.CURRENT_FORMATTER.equalsIgnoreCase("Disabled"))
+		final ByteSink sink = SINKS.get();
+		try
 		{
-			data = desc.getFormat().encode(actionTask, actionTask.getWeightValue(20.0, weight), data);
-			if (actionTask.isCancelled())
+			double progress = actionTask.getCurrentProgress();
+			if ((desc.getFormat() != null) && !ConfigWindow.CURRENT_FORMATTER.equalsIgnoreCase("Disabled"))
 			{
-				return null;
+				data = desc.getFormat().encode(actionTask, actionTask.getWeightValue(20.0, weight), data);
+				if (actionTask.isCancelled())
+				{
+					return null;
+				}
+				
+				progress = actionTask.addProgress(progress, 20.0, weight);
 			}
-			
-			progress = actionTask.addProgress(progress, 20.0, weight);
-		}
-		if (desc.isRawData())
-		{
-			if (actionTask.isCancelled())
+			if (desc.isRawData())
 			{
-				return null;
+				if (actionTask.isCancelled())
+				{
+					return null;
+				}
+				
+				progress = actionTask.addProgress(progress, 50.0, weight);
+				if (!writeNodeValue(currentFile, crypter, data, desc.getNodes().get(0), true, mass, sink))
+				{
+					LOGGER.log(Level.WARNING, "Failed to parse raw data.");
+				}
 			}
-			
-			progress = actionTask.addProgress(progress, 50.0, weight);
-			final byte[] bytes = parseNodeValue(currentFile, crypter, data, desc.getNodes().get(0), true, mass);
-			if (bytes != null)
+			else
 			{
-				stream.write(bytes);
+				progress = packRecords(actionTask, weight, progress, currentFile, crypter, desc, TextRecords.of(desc.getPlan(), data), sink, mass);
+				if (actionTask.isCancelled())
+				{
+					return null;
+				}
 			}
-			else
+			
+			return complete(actionTask, weight, progress, desc, sink);
+		}
+		finally
+		{
+			sink.reset();
+		}
+	}
+	
+	/**
+	 * Packs a text read from a reader, with CRLF or LF line ends like the text given to the string version.<br>
+	 * The text is split into tokens while it is read and is never copied into a string, formatted records go through a {@link RecordFormatListener} on the way.<br>
+	 * Raw data and formatters working on the whole text still need the whole text.
+	 */
+	public static byte[] parseData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, Descriptor desc, Reader reader, boolean mass) throws Exception
+	{
+		final boolean hasFormat = (desc.getFormat() != null) && !ConfigWindow.CURRENT_FORMATTER.equalsIgnoreCase("Disabled");
+		if (desc.isRawData() || (hasFormat && !(desc.getFormat() instanceof RecordFormatListener)))
+		{
+			final StringBuilder data = new StringBuilder();
+			final char[] chunk = new char[8192];
+			int read;
+			while ((read = reader.read(chunk)) >= 0)
 			{
-				LOGGER.log(Level.WARNING, "Failed to parse raw data.");
+				data.append(chunk, 0, read);
 			}
+			return parseData(actionTask, weight, currentFile, crypter, desc, data.toString().replace("\n", "\r\n"), mass);
 		}
-		else
+		
+		double progress = actionTask.getCurrentProgress();
+		final TextRecords text = TextRecords.read(desc.getPlan(), hasFormat ? new RecordFormatReader(((RecordFormatListener) desc.getFormat()).newEncoder(), reader) : reader);
+		if (hasFormat)
+		{
+			progress = actionTask.addProgress(progress, 20.0, weight);
+		}
+		
+		final ByteSink sink = SINKS.get();
+		try
 		{
-			final String lines = data.replace("\r\n", "\t");
-			final List<WriteData> writeData = new ArrayList<>();
-			packData(actionTask, actionTask.getWeightValue(30.0, weight), currentFile, crypter, writeData, lines, new HashMap<>(), new HashMap<>(), desc.getNodes(), mass);
+			progress = packRecords(actionTask, weight, progress, currentFile, crypter, desc, text, sink, mass);
 			if (actionTask.isCancelled())
 			{
 				return null;
 			}
 			
-			progress = actionTask.addProgress(progress, 30.0, weight);
-			final double progressWeight = actionTask.getWeightValue(40.0, weight);
-			final double progressDiff = 100.0 / writeData.size();
-			
-			final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length() * 2);
-			for (WriteData wr : writeData)
-			{
-				if (wr.isIterator())
-				{
-					LOGGER.log(Level.WARNING, ("Found iterator without writed size: " + wr.getParamNode().getName()));
-				}
-				else
-				{
-					buffer.put(wr.getBytes());
-					if (actionTask.isCancelled())
-					{
-						return null;
-					}
-					progress = actionTask.addProgress(progress, progressDiff, progressWeight);
-				}
-			}
-			try
+			return complete(actionTask, weight, progress, desc, sink);
+		}
+		finally
+		{
+			sink.reset();
+		}
+	}
+	
+	/**
+	 * Packs the records of a tokenized text into the sink.<br>
+	 * Cycle sizes are written where their iterators were met, once all records of the cycle are packed.
+	 * @return the progress, the caller checks for cancellation
+	 */
+	private static double packRecords(ActionTask actionTask, double weight, double progress, File currentFile, DatCrypter crypter, Descriptor desc, TextRecords text, ByteSink sink, boolean mass) throws Exception
+	{
+		final List<SizeMark> sizes = new ArrayList<>();
+		packData(actionTask, actionTask.getWeightValue(30.0, weight), currentFile, crypter, sink, sizes, text, 0, text.size(), new HashMap<>(), desc.getPlan().getRoot(), mass);
+		if (actionTask.isCancelled())
+		{
+			return progress;
+		}
+		
+		for (SizeMark size : sizes)
+		{
+			if (size.bytes == null)
 			{
-				buffer.flip();
-				stream.write(ByteBuffer.allocate(buffer.limit()).put(buffer).array());
-				if (actionTask.isCancelled())
-				{
-					return null;
-				}
+				LOGGER.log(Level.WARNING, ("Found iterator without writed size: " + size.node.getName()));
 			}
-			catch (IOException e)
+			else
 			{
-				LOGGER.log(Level.WARNING, e.getMessage(), e);
+				sink.insert(size.position, size.bytes);
 			}
 		}
-		
+		return actionTask.addProgress(progress, 70.0, weight);
+	}
+	
+	private static byte[] complete(ActionTask actionTask, double weight, double progress, Descriptor desc, ByteSink sink)
+	{
 		actionTask.addProgress(progress, 10.0, weight);
 		
 		if (desc.isSafePackage())
 		{
-			stream.write(DescriptorWriter.END_FILE_BYTES);
+			sink.write(DescriptorWriter.END_FILE_BYTES);
 		}
 		
-		return stream.toByteArray();
+		return sink.toByteArray();
 	}
 	
-	private static void packData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, List<WriteData> writeData, String lines, Map<String, String> paramMap, Map<ParamNode, String> mapData, List<ParamNode> nodes, boolean mass) throws Exception
+	private static void packData(ActionTask actionTask, double weight, File currentFile, DatCrypter crypter, ByteSink sink, List<SizeMark> sizes, TextRecords text, int from, int to, Map<ParamNode, String> mapData, Block block, boolean mass) throws Exception
 	{
-		final List<WriteData> subWriteData = new ArrayList<>();
-		for (ParamNode node : nodes)
+		final int levelStart = sizes.size();
+		for (Step step : block.steps)
 		{
+			final ParamNode node = step.node;
 			if ((actionTask != null) && actionTask.isCancelled())
 			{
 				return;
 			}
 			
-			if (node.isIterator())
+			if (step.iterator)
 			{
-				subWriteData.add(new WriteIterator(node));
+				sizes.add(new SizeMark(node, sink.size()));
 			}
-			else if (node.getEntityType().isCycle())
+			else if (step.op == DescriptorPlan.CYCLE)
 			{
-				if (!node.isNameHidden())
+				if (!step.nameHidden)
 				{
-					final Pattern pattern = Pattern.compile("\\b" + node.getName().concat("_begin\\b(.*?)\\b").concat(node.getName()).concat("_end\\b"), 32);
-					final Matcher m = pattern.matcher(lines);
-					final List<String> list = new ArrayList<>();
-					while (m.find())
+					// Token ranges between the begin and end markers, searched the same way the records were once matched by a pattern.
+					int[] records = new int[32];
+					int count = 0;
+					int begin = text.find(step.beginText, from, to);
+					while (begin >= 0)
 					{
-						list.add(m.group(1));
+						final int end = text.find(step.endMarker, begin + 1, to);
+						if (end < 0)
+						{
+							break;
+						}
+						
+						if ((2 * count) == records.length)
+						{
+							records = Arrays.copyOf(records, records.length * 2);
+						}
+						records[2 * count] = begin + 1;
+						records[(2 * count) + 1] = end;
+						++count;
+						begin = text.find(step.beginText, end + 1, to);
 					}
 					
 					final double progress = (actionTask != null) ? actionTask.getCurrentProgress() : 0.0;
-					final double progressWeight = (actionTask != null) ? actionTask.getWeightValue(100.0 / list.size(), weight) : 0.0;
-					writeSize(currentFile, crypter, subWriteData, node, list.size(), mass);
-					for (String str : list)
+					final double progressWeight = (actionTask != null) ? actionTask.getWeightValue(100.0 / count, weight) : 0.0;
+					writeSize(currentFile, crypter, sizes, levelStart, node, count, mass);
+					for (int i = 0; i < count; i++)
 					{
-						paramMap.putAll(Util.stringToMap(str));
-						packData(actionTask, progressWeight, currentFile, crypter, subWriteData, str, paramMap, mapData, node.getSubNodes(), mass);
+						text.putValues(records[2 * i], records[(2 * i) + 1]);
+						packData(actionTask, progressWeight, currentFile, crypter, sink, sizes, text, records[2 * i], records[(2 * i) + 1], mapData, step.sub, mass);
 					}
 					
 					if (actionTask == null)
@@ -198,15 +259,15 @@ public class DescriptorWriter
 				}
 				else
 				{
-					final String param = getDataString(node, node.getName(), paramMap, mapData);
+					final String param = getDataString(node, step.slot, text, mapData);
 					if (param == null)
 					{
-						throw new PackDataException("Not found data for cycle: " + node.getName() + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+						throw new PackDataException("Not found data for cycle: " + node.getName() + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 					}
 					
 					if (param.isEmpty() || param.equals("{}"))
 					{
-						writeSize(currentFile, crypter, subWriteData, node, 0, mass);
+						writeSize(currentFile, crypter, sizes, levelStart, node, 0, mass);
 					}
 					else
 					{
@@ -214,94 +275,74 @@ public class DescriptorWriter
 						final int cycleSize = subParams.size();
 						if ((node.getSize() > 0) && (node.getSize() != cycleSize))
 						{
-							throw new PackDataException("Wrong static cycle count for cycle: " + node.getName() + " size: " + subParams.size() + " params: " + param + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+							throw new PackDataException("Wrong static cycle count for cycle: " + node.getName() + " size: " + subParams.size() + " params: " + param + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 						}
 						
-						writeSize(currentFile, crypter, subWriteData, node, cycleSize, mass);
-						int nPramNode = 0;
-						int nCycleNode = 0;
-						for (ParamNode n : node.getSubNodes())
-						{
-							if (n.getEntityType().isCycle())
-							{
-								++nCycleNode;
-							}
-							else
-							{
-								if (n.isIterator())
-								{
-									continue;
-								}
-								
-								++nPramNode;
-							}
-						}
+						writeSize(currentFile, crypter, sizes, levelStart, node, cycleSize, mass);
+						final boolean split = (step.sub.plainParamCount > 0) || (step.sub.cycleCount > 1);
 						for (String subParam : subParams)
 						{
 							int paramIndex = 0;
-							final List<String> sub2Params = ((nPramNode > 0) || (nCycleNode > 1)) ? Util.splitList(subParam) : Collections.singletonList(subParam);
-							for (ParamNode n2 : node.getSubNodes())
+							final List<String> sub2Params = split ? Util.splitList(subParam) : Collections.singletonList(subParam);
+							for (Step n2 : step.sub.steps)
 							{
-								if (!n2.isIterator() && !n2.getEntityType().isConstant())
+								if (n2.separated)
 								{
 									if (paramIndex >= sub2Params.size())
 									{
-										throw new PackDataException("Wrong param count for cycle: " + node.getName() + ", paramIndex: " + paramIndex + ", params: " + param + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+										throw new PackDataException("Wrong param count for cycle: " + node.getName() + ", paramIndex: " + paramIndex + ", params: " + param + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 									}
-									mapData.put(n2, sub2Params.get(paramIndex++));
+									mapData.put(n2.node, sub2Params.get(paramIndex++));
 								}
 							}
-							packData(null, 0.0, currentFile, crypter, subWriteData, lines, paramMap, mapData, node.getSubNodes(), mass);
+							packData(null, 0.0, currentFile, crypter, sink, sizes, text, from, to, mapData, step.sub, mass);
 						}
 					}
 				}
 			}
-			else if (node.getEntityType().isWrapper())
+			else if (step.op == DescriptorPlan.WRAPPER)
 			{
-				final String param = getDataString(node, node.getName(), paramMap, mapData);
+				final String param = getDataString(node, step.slot, text, mapData);
 				if (param == null)
 				{
-					throw new PackDataException("Not found data for wrapper: " + node.getName() + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+					throw new PackDataException("Not found data for wrapper: " + node.getName() + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 				}
 				
 				final List<String> subParams = Util.splitList(param);
 				int paramIndex2 = 0;
-				for (ParamNode n3 : node.getSubNodes())
+				for (Step n3 : step.sub.steps)
 				{
-					if (!n3.isIterator() && !n3.getEntityType().isConstant())
+					if (n3.separated)
 					{
 						if (paramIndex2 >= subParams.size())
 						{
-							throw new PackDataException("Wrong param count for wrapper: " + node.getName() + ", paramIndex: " + paramIndex2 + ", params: " + param + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+							throw new PackDataException("Wrong param count for wrapper: " + node.getName() + ", paramIndex: " + paramIndex2 + ", params: " + param + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 						}
 						
-						mapData.put(n3, subParams.get(paramIndex2++));
+						mapData.put(n3.node, subParams.get(paramIndex2++));
 					}
 				}
-				packData(null, 0.0, currentFile, crypter, subWriteData, lines, paramMap, mapData, node.getSubNodes(), mass);
+				packData(null, 0.0, currentFile, crypter, sink, sizes, text, from, to, mapData, step.sub, mass);
 			}
-			else if (node.getEntityType().isVariable())
+			else if (step.op == DescriptorPlan.VARIABLE)
 			{
-				final String param = getDataString(node, node.getName(), paramMap, mapData);
+				final String param = getDataString(node, step.slot, text, mapData);
 				if (param == null)
 				{
-					throw new PackDataException("Not found data for variable: " + node.getName() + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+					throw new PackDataException("Not found data for variable: " + node.getName() + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 				}
 				
-				final byte[] bytes = parseNodeValue(currentFile, crypter, param, node, false, mass);
-				if (bytes == null)
+				if (!writeNodeValue(currentFile, crypter, param, node, false, mass, sink))
 				{
-					throw new PackDataException("Node value is null.\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getName()));
+					throw new PackDataException("Node value is null.\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.slot));
 				}
-				
-				subWriteData.add(new WriteBytes(node, bytes));
 			}
-			else if (node.getEntityType().isIf())
+			else if (step.op == DescriptorPlan.IF)
 			{
-				final String param = getDataString(node, node.getParamIf(), paramMap, mapData);
+				final String param = getDataString(node, step.ifSlot, text, mapData);
 				if (param == null)
 				{
-					throw new PackDataException("Not found data for if: " + node.getParamIf() + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getParamIf()));
+					throw new PackDataException("Not found data for if: " + node.getParamIf() + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.ifSlot));
 				}
 				
 				if (!node.getValIf().equalsIgnoreCase(param))
@@ -309,14 +350,14 @@ public class DescriptorWriter
 					continue;
 				}
 				
-				packData(null, 0.0, currentFile, crypter, subWriteData, lines, paramMap, mapData, node.getSubNodes(), mass);
+				packData(null, 0.0, currentFile, crypter, sink, sizes, text, from, to, mapData, step.sub, mass);
 			}
-			else if (node.getEntityType().isElse())
+			else if (step.op == DescriptorPlan.ELSE)
 			{
-				final String param = getDataString(node, node.getParamIf(), paramMap, mapData);
+				final String param = getDataString(node, step.ifSlot, text, mapData);
 				if (param == null)
 				{
-					throw new PackDataException("Not found data for else: " + node.getParamIf() + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getParamIf()));
+					throw new PackDataException("Not found data for else: " + node.getParamIf() + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.ifSlot));
 				}
 				
 				if (node.getValIf().equalsIgnoreCase(param))
@@ -324,19 +365,19 @@ public class DescriptorWriter
 					continue;
 				}
 				
-				packData(null, 0.0, currentFile, crypter, subWriteData, lines, paramMap, mapData, node.getSubNodes(), mass);
+				packData(null, 0.0, currentFile, crypter, sink, sizes, text, from, to, mapData, step.sub, mass);
 			}
 			else
 			{
-				if (!node.getEntityType().isMask())
+				if (step.op != DescriptorPlan.MASK)
 				{
 					continue;
 				}
 				
-				final String param = getDataString(node, node.getParamMask(), paramMap, mapData);
+				final String param = getDataString(node, step.maskSlot, text, mapData);
 				if (param == null)
 				{
-					throw new PackDataException("Not found data for mask: " + node.getParamMask() + "\r\n-node: " + node + "\r\n\tparam: " + paramMap.get(node.getParamMask()));
+					throw new PackDataException("Not found data for mask: " + node.getParamMask() + "\r\n-node: " + node + "\r\n\tparam: " + text.getValue(step.maskSlot));
 				}
 				
 				final int mask = Integer.parseInt(param);
@@ -345,13 +386,16 @@ public class DescriptorWriter
 					continue;
 				}
 				
-				packData(null, 0.0, currentFile, crypter, subWriteData, lines, paramMap, mapData, node.getSubNodes(), mass);
+				packData(null, 0.0, currentFile, crypter, sink, sizes, text, from, to, mapData, step.sub, mass);
 			}
 		}
-		writeData.addAll(subWriteData);
 	}
 	
-	private static byte[] parseNodeValue(File currentFile, DatCrypter crypter, String data, ParamNode node, boolean isRaw, boolean mass)
+	/**
+	 * Writes the value of a node to the sink.
+	 * @return false if the value could not be written, in which case nothing is left in the sink
+	 */
+	private static boolean writeNodeValue(File currentFile, DatCrypter crypter, String data, ParamNode node, boolean isRaw, boolean mass, ByteSink sink)
 	{
 		final ParamType nodeType = node.getType();
 		if (nodeType == null)
@@ -360,82 +404,112 @@ public class DescriptorWriter
 			{
 				LOGGER.log(Level.WARNING, ("Incorrect node type for node " + node));
 			}
-			return null;
+			return false;
 		}
 		
 		if (ConfigDebug.DAT_REPLACEMENT_ENUMS && node.isEnum())
 		{
-			data = String.valueOf(DescriptorParser.getInstance().getEnumNameByName(node.getEnumName(), data)).trim();
+			final EnumTable table = node.getEnumTable();
+			final int index = (table != null) ? table.getIndex(data) : EnumTable.MISSING;
+			if (index == EnumTable.MISSING)
+			{
+				data = String.valueOf(DescriptorParser.getInstance().getEnumNameByName(node.getEnumName(), data)).trim();
+			}
+			else if (writeEnumIndex(nodeType, index, sink))
+			{
+				return true;
+			}
+			else
+			{
+				data = String.valueOf(index);
+			}
 		}
 		
+		final int mark = sink.size();
 		try
 		{
 			switch (nodeType)
 			{
 				case UCHAR:
 				{
-					return ByteWriter.writeUByte(Byte.parseByte(data));
+					sink.writeByte(Byte.parseByte(data));
+					return true;
 				}
 				case CNTR:
 				{
-					return ByteWriter.writeCompactInt(Integer.parseInt(data));
+					sink.writeCompactInt(Integer.parseInt(data));
+					return true;
 				}
 				case UBYTE:
 				{
-					return ByteWriter.writeUByte(Short.parseShort(data));
+					sink.writeByte(Short.parseShort(data));
+					return true;
 				}
 				case SHORT:
 				{
-					return ByteWriter.writeShort(Short.parseShort(data));
+					sink.writeShort(Short.parseShort(data));
+					return true;
 				}
 				case USHORT:
 				{
-					return ByteWriter.writeUShort(Integer.parseInt(data));
+					sink.writeShort(Integer.parseInt(data));
+					return true;
 				}
 				case UINT:
 				case INT:
 				{
-					return ByteWriter.writeInt(Integer.parseInt(data));
+					sink.writeInt(Integer.parseInt(data));
+					return true;
 				}
 				case UNICODE:
 				{
-					return ByteWriter.writeUtfString(isRaw ? data : data.substring(1, data.length() - 1), isRaw);
+					sink.writeUtfString(isRaw ? data : data.substring(1, data.length() - 1), isRaw);
+					return true;
 				}
 				case ASCF:
 				{
-					return ByteWriter.writeString(isRaw ? data : data.substring(1, data.length() - 1), isRaw);
+					sink.writeString(isRaw ? data : data.substring(1, data.length() - 1), isRaw);
+					return true;
 				}
 				case DOUBLE:
 				{
-					return ByteWriter.writeDouble(Double.parseDouble(data));
+					sink.writeDouble(Double.parseDouble(data));
+					return true;
 				}
 				case FLOAT:
 				{
-					return ByteWriter.writeFloat(Float.parseFloat(data));
+					sink.writeFloat(Float.parseFloat(data));
+					return true;
 				}
 				case LONG:
 				{
-					return ByteWriter.writeLong(Long.parseLong(data));
+					sink.writeLong(Long.parseLong(data));
+					return true;
 				}
 				case RGBA:
 				{
-					return ByteWriter.writeRGBA(data);
+					sink.writeRGBA(data);
+					return true;
 				}
 				case RGB:
 				{
-					return ByteWriter.writeRGB(data);
+					sink.writeRGB(data);
+					return true;
 				}
 				case HEX:
 				{
-					return ByteWriter.writeByte((byte) (Integer.parseInt(data, 16) & 0xFF));
+					sink.writeByte(Integer.parseInt(data, 16) & 0xFF);
+					return true;
 				}
 				case MAP_INT:
 				{
 					if (ConfigDebug.DAT_REPLACEMENT_NAMES)
 					{
-						return ByteWriter.writeInt(GameDataName.getInstance().getId(currentFile, crypter, node, data, mass));
+						sink.writeInt(GameDataName.getInstance().getId(currentFile, crypter, node, data, mass));
+						return true;
 					}
-					return ByteWriter.writeInt(Integer.parseInt(data));
+					sink.writeInt(Integer.parseInt(data));
+					return true;
 				}
 				default:
 				{
@@ -444,6 +518,10 @@ public class DescriptorWriter
 				}
 			}
 		}
+		catch (UnknownNameException e)
+		{
+			throw e;
+		}
 		catch (Exception e)
 		{
 			if (!mass)
@@ -452,29 +530,91 @@ public class DescriptorWriter
 			}
 		}
 		
-		return null;
+		sink.truncate(mark);
+		return false;
+	}
+	
+	/**
+	 * Writes an enum index to an integral node, as parsing its text would.
+	 * @return false if the node is not integral or the index does not fit, the text is then parsed to report it
+	 */
+	private static boolean writeEnumIndex(ParamType nodeType, int index, ByteSink sink)
+	{
+		switch (nodeType)
+		{
+			case UCHAR:
+			{
+				if (index != (byte) index)
+				{
+					return false;
+				}
+				sink.writeByte(index);
+				return true;
+			}
+			case UBYTE:
+			case SHORT:
+			{
+				if (index != (short) index)
+				{
+					return false;
+				}
+				
+				if (nodeType == ParamType.UBYTE)
+				{
+					sink.writeByte(index);
+				}
+				else
+				{
+					sink.writeShort(index);
+				}
+				return true;
+			}
+			case CNTR:
+			{
+				sink.writeCompactInt(index);
+				return true;
+			}
+			case USHORT:
+			{
+				sink.writeShort(index);
+				return true;
+			}
+			case UINT:
+			case INT:
+			{
+				sink.writeInt(index);
+				return true;
+			}
+			default:
+			{
+				return false;
+			}
+		}
 	}
 	
-	private static String getDataString(ParamNode node, String name, Map<String, String> paramMap, Map<ParamNode, String> mapData)
+	private static String getDataString(ParamNode node, int slot, TextRecords text, Map<ParamNode, String> mapData)
 	{
 		if ((mapData != null) && mapData.containsKey(node))
 		{
 			return mapData.get(node);
 		}
-		return paramMap.get(name);
+		return text.getValue(slot);
 	}
 	
-	private static void writeSize(File currentFile, DatCrypter crypter, List<WriteData> writeData, ParamNode node, int cycleSize, boolean mass) throws CycleArgumentException, PackDataException
+	/**
+	 * Resolves the last iterator of the cycle written since the start of the level.
+	 */
+	private static void writeSize(File currentFile, DatCrypter crypter, List<SizeMark> sizes, int levelStart, ParamNode node, int cycleSize, boolean mass) throws CycleArgumentException, PackDataException
 	{
 		if (!node.isSkipWriteSize() && (node.getSize() < 0))
 		{
-			WriteData iterator = null;
-			for (int i = writeData.size() - 1; i >= 0; --i)
+			SizeMark iterator = null;
+			for (int i = sizes.size() - 1; i >= levelStart; --i)
 			{
-				final WriteData wd = writeData.get(i);
-				if (wd.isIterator() && wd.getParamNode().getName().equals(node.getCycleName()))
+				final SizeMark size = sizes.get(i);
+				if ((size.bytes == null) && size.node.getName().equals(node.getCycleName()))
 				{
-					iterator = wd;
+					iterator = size;
 					break;
 				}
 			}
@@ -484,72 +624,29 @@ public class DescriptorWriter
 				throw new CycleArgumentException("Not found iterator for cycle: " + node.getName());
 			}
 			
-			final int index = writeData.indexOf(iterator);
-			writeData.remove(index);
-			final ParamNode iteratorNode = iterator.getParamNode();
-			final byte[] bytes = parseNodeValue(currentFile, crypter, String.valueOf(cycleSize), iteratorNode, false, mass);
-			if (bytes == null)
+			final ByteSink bytes = new ByteSink(8);
+			if (!writeNodeValue(currentFile, crypter, String.valueOf(cycleSize), iterator.node, false, mass, bytes))
 			{
 				throw new PackDataException("Cannot write size! Node value is null.\r\n-node: " + node);
 			}
 			
-			writeData.add(index, new WriteBytes(iteratorNode, bytes));
-		}
-	}
-	
-	private static class WriteData
-	{
-		final ParamNode paramNode;
-		
-		WriteData(ParamNode paramNode)
-		{
-			this.paramNode = paramNode;
-		}
-		
-		boolean isIterator()
-		{
-			return false;
-		}
-		
-		ParamNode getParamNode()
-		{
-			return paramNode;
-		}
-		
-		byte[] getBytes()
-		{
-			return new byte[0];
+			iterator.bytes = bytes.toByteArray();
 		}
 	}
 	
-	public static class WriteIterator extends WriteData
+	/**
+	 * Position of an iterator in the sink, with the size bytes once its cycle is packed.
+	 */
+	private static class SizeMark
 	{
-		WriteIterator(ParamNode paramNode)
-		{
-			super(paramNode);
-		}
-		
-		@Override
-		public boolean isIterator()
-		{
-			return true;
-		}
-	}
-	
-	private static class WriteBytes extends WriteData
-	{
-		final byte[] bytes;
-		
-		WriteBytes(ParamNode paramNode, byte[] bytes)
-		{
-			super(paramNode);
-			this.bytes = bytes;
-		}
+		final ParamNode node;
+		final int position;
+		byte[] bytes;
 		
-		@Override
-		public byte[] getBytes()
+		SizeMark(ParamNode node, int position)
 		{
-			return bytes;
+			this.node = node;
+			this.position = position;
 		}
 	}
 }
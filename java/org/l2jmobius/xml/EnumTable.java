@@ -0,0 +1,142 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The values of one enum of data/enums, bound to the {@link ParamNode} nodes using it when their descriptor is loaded.<br>
+ * Names are found by index in an array, offset by the lowest index when the indexes are dense, or by binary search over the sorted indexes otherwise.<br>
+ * Indexes are found by name in an open addressing table, so neither side boxes the index.
+ */
+final class EnumTable
+{
+	/** Returned by {@link #getIndex} for names the enum does not declare. */
+	static final int MISSING = Integer.MIN_VALUE;
+	
+	private final Set<Integer> _indexes;
+	/** Lowest index, the offset of {@link #_dense}. */
+	private final int _min;
+	/** Names by index - min, {@code null} when the indexes are sparse. */
+	private final String[] _dense;
+	/** Sorted indexes and their names, used when the indexes are sparse. */
+	private final int[] _keys;
+	private final String[] _values;
+	/** Names and indexes by name hash, at most half full. */
+	private final String[] _reverseNames;
+	private final int[] _reverseIndexes;
+	
+	/**
+	 * @param names the names by index
+	 * @param indexes the indexes by name
+	 */
+	EnumTable(Map<Integer, String> names, Map<String, Integer> indexes)
+	{
+		_indexes = Collections.unmodifiableSet(new LinkedHashSet<>(names.keySet()));
+		
+		_keys = names.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+		_values = new String[_keys.length];
+		for (int i = 0; i < _keys.length; ++i)
+		{
+			_values[i] = names.get(_keys[i]);
+		}
+		
+		_min = (_keys.length > 0) ? _keys[0] : 0;
+		final long range = (_keys.length > 0) ? (((long) _keys[_keys.length - 1] - _min) + 1) : 0;
+		if (range <= Math.max(16, _keys.length * 2L))
+		{
+			_dense = new String[(int) range];
+			for (int i = 0; i < _keys.length; ++i)
+			{
+				_dense[_keys[i] - _min] = _values[i];
+			}
+		}
+		else
+		{
+			_dense = null;
+		}
+		
+		final int capacity = Integer.highestOneBit(Math.max(1, indexes.size()) * 4);
+		_reverseNames = new String[capacity];
+		_reverseIndexes = new int[capacity];
+		for (Map.Entry<String, Integer> entry : indexes.entrySet())
+		{
+			int slot = mix(entry.getKey().hashCode()) & (capacity - 1);
+			while (_reverseNames[slot] != null)
+			{
+				slot = (slot + 1) & (capacity - 1);
+			}
+			_reverseNames[slot] = entry.getKey();
+			_reverseIndexes[slot] = entry.getValue();
+		}
+	}
+	
+	/**
+	 * @param index the index
+	 * @return the name declared for the index, {@code null} if there is none
+	 */
+	String getName(int index)
+	{
+		if (_dense != null)
+		{
+			final int i = index - _min;
+			return ((i >= 0) && (i < _dense.length)) ? _dense[i] : null;
+		}
+		
+		final int i = Arrays.binarySearch(_keys, index);
+		return (i >= 0) ? _values[i] : null;
+	}
+	
+	/**
+	 * @param name the name
+	 * @return the index declared for the name, {@link #MISSING} if there is none
+	 */
+	int getIndex(String name)
+	{
+		final int mask = _reverseNames.length - 1;
+		for (int slot = mix(name.hashCode()) & mask;; slot = (slot + 1) & mask)
+		{
+			final String value = _reverseNames[slot];
+			if (value == null)
+			{
+				return MISSING;
+			}
+			
+			if (value.equals(name))
+			{
+				return _reverseIndexes[slot];
+			}
+		}
+	}
+	
+	/**
+	 * @return the declared indexes, in declaration order
+	 */
+	Set<Integer> getIndexes()
+	{
+		return _indexes;
+	}
+	
+	private static int mix(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The links of one chronicle, prepared for file name lookups.<br>
+ * Matching is the same as {@code fileName.toLowerCase().matches(pattern.toLowerCase())} over the links in order, skipping links whose descriptor version does not exist:
+ * <ul>
+ * <li>Patterns are lower cased and compiled once.</li>
+ * <li>Patterns without regex syntax other than {@code .} are compared char by char, most of them are rejected on length alone.</li>
+ * <li>The result is kept per file name, the index is rebuilt by each {@link DescriptorParser#parse()}.</li>
+ * </ul>
+ */
+final class LinkIndex
+{
+	private static final String REGEX_CHARS = "\\^$|?*+()[]{}";
+	
+	private final DescriptorLink[] _links;
+	/** Lower cased pattern of literal links, {@code null} for the others. */
+	private final String[] _literals;
+	/** Compiled lower cased pattern of the other links, {@code null} for literal ones. */
+	private final Pattern[] _patterns;
+	/** Descriptor versions by link file. */
+	private final Function<String, Map<String, Descriptor>> _descriptors;
+	private final Map<String, Optional<Descriptor>> _results = new ConcurrentHashMap<>();
+	
+	LinkIndex(List<DescriptorLink> links, Function<String, Map<String, Descriptor>> descriptors)
+	{
+		_descriptors = descriptors;
+		_links = links.toArray(new DescriptorLink[0]);
+		_literals = new String[_links.length];
+		_patterns = new Pattern[_links.length];
+		for (int i = 0; i < _links.length; ++i)
+		{
+			final String pattern = _links[i].getNamePattern().toLowerCase();
+			if (isLiteral(pattern))
+			{
+				_literals[i] = pattern;
+			}
+			else
+			{
+				_patterns[i] = Pattern.compile(pattern);
+			}
+		}
+	}
+	
+	/**
+	 * @param fileName the file name
+	 * @return the descriptor of the first link matching the file name, {@code null} if there is none
+	 */
+	Descriptor find(String fileName)
+	{
+		Optional<Descriptor> result = _results.get(fileName);
+		if (result == null)
+		{
+			result = Optional.ofNullable(resolve(fileName.toLowerCase()));
+			_results.putIfAbsent(fileName, result);
+		}
+		return result.orElse(null);
+	}
+	
+	private Descriptor resolve(String name)
+	{
+		for (int i = 0; i < _links.length; ++i)
+		{
+			if (matches(i, name))
+			{
+				final Map<String, Descriptor> versions = _descriptors.apply(_links[i].getLinkFile());
+				final Descriptor desc = versions.get(_links[i].getLinkVersion());
+				if (desc != null)
+				{
+					return desc;
+				}
+			}
+		}
+		return null;
+	}
+	
+	private boolean matches(int index, String name)
+	{
+		final String literal = _literals[index];
+		if (literal == null)
+		{
+			return _patterns[index].matcher(name).matches();
+		}
+		
+		if (literal.length() != name.length())
+		{
+			return false;
+		}
+		
+		for (int i = 0; i < literal.length(); ++i)
+		{
+			final char c = literal.charAt(i);
+			// Unescaped '.' still matches any char, as with the regex.
+			if ((c != '.') && (c != name.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isLiteral(String pattern)
+	{
+		for (int i = 0; i < pattern.length(); ++i)
+		{
+			if (REGEX_CHARS.indexOf(pattern.charAt(i)) >= 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -31,6 +31,8 @@ public class ParamNode
 	private boolean _isIterator;
 	private boolean _skipWriteSize;
 	private String _enumName;
+	/** The values of the enum, bound when the descriptor is loaded. */
+	private EnumTable _enumTable;
 	private String _paramIf;
 	private String _valIf;
 	private String _paramMask;
@@ -199,6 +201,16 @@ public class ParamNode
 		return _enumName;
 	}
 	
+	EnumTable getEnumTable()
+	{
+		return _enumTable;
+	}
+	
+	void setEnumTable(EnumTable enumTable)
+	{
+		_enumTable = enumTable;
+	}
+	
 	public String getParamMask()
 	{
 		return _paramMask;
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatter;
+
+/**
+ * Reader between the text of a formatted file and {@link DescriptorWriter}.<br>
+ * Lines are read as they are needed, each record line goes through the formatter and the formatted records are read on, each ended by CRLF like the string formatters end them.
+ */
+final class RecordFormatReader extends Reader
+{
+	private static final int FILL_SIZE = 64 * 1024;
+	
+	private final RecordFormatter _formatter;
+	private final BufferedReader _reader;
+	/** Formatted records not read yet, from {@link #_position}. */
+	private final StringBuilder _buffer = new StringBuilder();
+	private final Consumer<FormatRecord> _out = record -> record.appendTo(_buffer).append("\r\n");
+	private int _position;
+	private boolean _finished;
+	
+	RecordFormatReader(RecordFormatter formatter, Reader reader)
+	{
+		_formatter = formatter;
+		_reader = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+	
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		
+		while (_position == _buffer.length())
+		{
+			if (_finished)
+			{
+				return -1;
+			}
+			
+			_buffer.setLength(0);
+			_position = 0;
+			fill();
+		}
+		
+		final int read = Math.min(len, _buffer.length() - _position);
+		_buffer.getChars(_position, _position + read, cbuf, off);
+		_position += read;
+		return read;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		_reader.close();
+	}
+	
+	/**
+	 * Formats lines until enough records are buffered, or until the end of the text and the records the formatter held back.
+	 */
+	private void fill() throws IOException
+	{
+		while (_buffer.length() < FILL_SIZE)
+		{
+			final String line = _reader.readLine();
+			if (line == null)
+			{
+				_formatter.finish(_out);
+				_finished = true;
+				return;
+			}
+			
+			final FormatRecord record = FormatRecord.parse(line);
+			if (record != null)
+			{
+				_formatter.format(record, _out);
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+import org.l2jmobius.listeners.FormatRecord;
+import org.l2jmobius.listeners.RecordFormatter;
+
+/**
+ * Writer between {@link DescriptorReader} and the output of a formatted file.<br>
+ * The text written to it is split into lines, each record line goes through the formatter and the formatted records are written on, each ended by CRLF like the string formatters end them.
+ */
+final class RecordFormatWriter extends Writer
+{
+	private static final int FLUSH_SIZE = 64 * 1024;
+	
+	private final RecordFormatter _formatter;
+	private final Writer _writer;
+	/** The line being written, up to its line end. */
+	private final StringBuilder _line = new StringBuilder();
+	private final StringBuilder _buffer = new StringBuilder();
+	private final Consumer<FormatRecord> _out = record -> record.appendTo(_buffer).append("\r\n");
+	private long _written;
+	
+	RecordFormatWriter(RecordFormatter formatter, Writer writer)
+	{
+		_formatter = formatter;
+		_writer = writer;
+	}
+	
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException
+	{
+		final int end = off + len;
+		int start = off;
+		for (int i = off; i < end; ++i)
+		{
+			final char c = cbuf[i];
+			if ((c == '\r') || (c == '\n'))
+			{
+				_line.append(cbuf, start, i - start);
+				endLine();
+				start = i + 1;
+			}
+		}
+		_line.append(cbuf, start, end - start);
+		
+		if (_buffer.length() >= FLUSH_SIZE)
+		{
+			flushBuffer();
+		}
+	}
+	
+	/**
+	 * Formats the last line, then the records the formatter held back, and writes what is left.
+	 * @return the number of chars written
+	 * @throws IOException if the writer fails
+	 */
+	long finish() throws IOException
+	{
+		endLine();
+		_formatter.finish(_out);
+		flushBuffer();
+		return _written;
+	}
+	
+	@Override
+	public void flush() throws IOException
+	{
+		_writer.flush();
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		_writer.close();
+	}
+	
+	private void endLine()
+	{
+		if (_line.length() > 0)
+		{
+			final FormatRecord record = FormatRecord.parse(_line.toString());
+			_line.setLength(0);
+			if (record != null)
+			{
+				_formatter.format(record, _out);
+			}
+		}
+	}
+	
+	private void flushBuffer() throws IOException
+	{
+		_writer.append(_buffer);
+		_written += _buffer.length();
+		_buffer.setLength(0);
+	}
+}
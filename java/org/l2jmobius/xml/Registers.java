@@ -0,0 +1,158 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+/**
+ * The variables of one file being read, stored by the slots a {@link DescriptorPlan} assigned to their names.<br>
+ * Numbers are kept unboxed, so reading a field does not allocate.
+ */
+final class Registers
+{
+	private static final byte NONE = 0;
+	private static final byte SHORT = 1;
+	private static final byte INT = 2;
+	private static final byte LONG = 3;
+	private static final byte FLOAT = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte STRING = 6;
+	
+	private final byte[] _kinds;
+	private final long[] _values;
+	private final Object[] _objects;
+	
+	Registers(int slotCount)
+	{
+		_kinds = new byte[slotCount];
+		_values = new long[slotCount];
+		_objects = new Object[slotCount];
+	}
+	
+	void setShort(int slot, short value)
+	{
+		_kinds[slot] = SHORT;
+		_values[slot] = value;
+	}
+	
+	void setInt(int slot, int value)
+	{
+		_kinds[slot] = INT;
+		_values[slot] = value;
+	}
+	
+	void setLong(int slot, long value)
+	{
+		_kinds[slot] = LONG;
+		_values[slot] = value;
+	}
+	
+	void setFloat(int slot, float value)
+	{
+		_kinds[slot] = FLOAT;
+		_values[slot] = Float.floatToRawIntBits(value);
+	}
+	
+	void setDouble(int slot, double value)
+	{
+		_kinds[slot] = DOUBLE;
+		_values[slot] = Double.doubleToRawLongBits(value);
+	}
+	
+	void setString(int slot, String value)
+	{
+		_kinds[slot] = STRING;
+		_objects[slot] = value;
+	}
+	
+	boolean isSet(int slot)
+	{
+		return (slot >= 0) && (_kinds[slot] != NONE);
+	}
+	
+	boolean isInt(int slot)
+	{
+		return _kinds[slot] == INT;
+	}
+	
+	boolean isShort(int slot)
+	{
+		return _kinds[slot] == SHORT;
+	}
+	
+	/**
+	 * @return {@code true} if the slot holds a short, an int or a long
+	 */
+	boolean isIntegral(int slot)
+	{
+		final byte kind = _kinds[slot];
+		return (kind == SHORT) || (kind == INT) || (kind == LONG);
+	}
+	
+	int getInt(int slot)
+	{
+		return (int) _values[slot];
+	}
+	
+	long getLong(int slot)
+	{
+		return _values[slot];
+	}
+	
+	/**
+	 * @return the value as an int mask, parsed from its text like any other condition value
+	 */
+	int getMask(int slot)
+	{
+		final byte kind = _kinds[slot];
+		if ((kind == SHORT) || (kind == INT))
+		{
+			return (int) _values[slot];
+		}
+		return Integer.parseInt(toString(slot));
+	}
+	
+	/**
+	 * @return the value as text, the same way it would print as a boxed value
+	 */
+	String toString(int slot)
+	{
+		switch (_kinds[slot])
+		{
+			case SHORT:
+			case INT:
+			case LONG:
+			{
+				return String.valueOf(_values[slot]);
+			}
+			case FLOAT:
+			{
+				return String.valueOf(Float.intBitsToFloat((int) _values[slot]));
+			}
+			case DOUBLE:
+			{
+				return String.valueOf(Double.longBitsToDouble(_values[slot]));
+			}
+			case STRING:
+			{
+				return String.valueOf(_objects[slot]);
+			}
+			default:
+			{
+				return null;
+			}
+		}
+	}
+}
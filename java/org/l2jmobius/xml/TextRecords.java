@@ -0,0 +1,199 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The text of a file being packed, split once into tokens.<br>
+ * Tokens are separated by tabs and line ends and are kept as offsets into a single char array. Records of named cycles are token ranges between their {@code _begin} and {@code _end} markers, and the last {@code name=value} token seen for each parameter of the {@link DescriptorPlan} is remembered by slot, so nothing is copied until a value is parsed.
+ */
+final class TextRecords
+{
+	private static final int READ_SIZE = 64 * 1024;
+	
+	private final DescriptorPlan _plan;
+	private final int[] _values;
+	private char[] _text = new char[READ_SIZE];
+	private int _length;
+	/** Start, end and '=' position of each token, the last one being -1 if there is none. */
+	private int[] _tokens = new int[3 * 1024];
+	private int _count;
+	private int _tokenStart = -1;
+	private int _tokenEq = -1;
+	
+	private TextRecords(DescriptorPlan plan)
+	{
+		_plan = plan;
+		_values = new int[plan.getSlotCount()];
+		for (int i = 0; i < _values.length; i++)
+		{
+			_values[i] = -1;
+		}
+	}
+	
+	static TextRecords of(DescriptorPlan plan, String text)
+	{
+		final TextRecords records = new TextRecords(plan);
+		records._text = text.toCharArray();
+		records._length = records._text.length;
+		records.scan(0, records._length);
+		records.endToken(records._length);
+		return records;
+	}
+	
+	/**
+	 * Reads and splits the text in a single pass.
+	 */
+	static TextRecords read(DescriptorPlan plan, Reader reader) throws IOException
+	{
+		final TextRecords records = new TextRecords(plan);
+		while (true)
+		{
+			if (records._length == records._text.length)
+			{
+				final char[] text = new char[records._text.length * 2];
+				System.arraycopy(records._text, 0, text, 0, records._length);
+				records._text = text;
+			}
+			
+			final int read = reader.read(records._text, records._length, records._text.length - records._length);
+			if (read < 0)
+			{
+				break;
+			}
+			
+			records.scan(records._length, records._length + read);
+			records._length += read;
+		}
+		records.endToken(records._length);
+		return records;
+	}
+	
+	int length()
+	{
+		return _length;
+	}
+	
+	int size()
+	{
+		return _count;
+	}
+	
+	/**
+	 * @return the first token in the range that equals the marker, or -1
+	 */
+	int find(String marker, int from, int to)
+	{
+		final int size = marker.length();
+		for (int i = from; i < to; i++)
+		{
+			final int start = _tokens[3 * i];
+			if ((_tokens[(3 * i) + 1] - start) == size)
+			{
+				int c = 0;
+				while ((c < size) && (_text[start + c] == marker.charAt(c)))
+				{
+					++c;
+				}
+				if (c == size)
+				{
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Remembers the {@code name=value} tokens of a range, later tokens replacing earlier ones of the same name.
+	 */
+	void putValues(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			final int eq = _tokens[(3 * i) + 2];
+			if (eq >= 0)
+			{
+				final int slot = _plan.findSlot(_text, _tokens[3 * i], eq);
+				if (slot >= 0)
+				{
+					_values[slot] = i;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the last value put for the slot, or {@code null}
+	 */
+	String getValue(int slot)
+	{
+		if ((slot < 0) || (_values[slot] < 0))
+		{
+			return null;
+		}
+		
+		final int token = _values[slot];
+		final int eq = _tokens[(3 * token) + 2];
+		return new String(_text, eq + 1, _tokens[(3 * token) + 1] - eq - 1);
+	}
+	
+	private void scan(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			final char c = _text[i];
+			if ((c == '\t') || (c == '\r') || (c == '\n'))
+			{
+				endToken(i);
+			}
+			else if (_tokenStart < 0)
+			{
+				_tokenStart = i;
+				_tokenEq = (c == '=') ? i : -1;
+			}
+			else if ((c == '=') && (_tokenEq < 0))
+			{
+				_tokenEq = i;
+			}
+		}
+	}
+	
+	private void endToken(int end)
+	{
+		if (_tokenStart < 0)
+		{
+			return;
+		}
+		
+		if ((3 * _count) == _tokens.length)
+		{
+			final int[] tokens = new int[_tokens.length * 2];
+			System.arraycopy(_tokens, 0, tokens, 0, _tokens.length);
+			_tokens = tokens;
+		}
+		
+		_tokens[3 * _count] = _tokenStart;
+		_tokens[(3 * _count) + 1] = end;
+		_tokens[(3 * _count) + 2] = _tokenEq;
+		++_count;
+		_tokenStart = -1;
+		_tokenEq = -1;
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The text output of {@link DescriptorReader}.<br>
+ * Without a writer the whole text is kept in memory. With a writer it is handed over in chunks as records are read, trimmed the same way {@link String#trim()} would trim the whole text, so memory stays bounded for large files.
+ */
+final class TextSink
+{
+	private static final int FLUSH_SIZE = 64 * 1024;
+	
+	private final Writer _writer;
+	private final StringBuilder _buffer = new StringBuilder();
+	private char[] _chunk;
+	/** Position of the first buffered char in the whole untrimmed text. */
+	private long _offset;
+	private long _written;
+	private char _lastChar;
+	
+	TextSink(Writer writer)
+	{
+		_writer = writer;
+	}
+	
+	TextSink append(String value) throws IOException
+	{
+		_buffer.append(value);
+		return checkFlush();
+	}
+	
+	TextSink append(char value) throws IOException
+	{
+		_buffer.append(value);
+		return checkFlush();
+	}
+	
+	TextSink append(int value) throws IOException
+	{
+		_buffer.append(value);
+		return checkFlush();
+	}
+	
+	TextSink append(long value) throws IOException
+	{
+		_buffer.append(value);
+		return checkFlush();
+	}
+	
+	TextSink append(float value) throws IOException
+	{
+		_buffer.append(value);
+		return checkFlush();
+	}
+	
+	/**
+	 * @return the last char of the untrimmed text
+	 */
+	char lastChar()
+	{
+		final int length = _buffer.length();
+		return (length > 0) ? _buffer.charAt(length - 1) : _lastChar;
+	}
+	
+	/**
+	 * @return the length of the untrimmed text so far
+	 */
+	long length()
+	{
+		return _offset + _buffer.length();
+	}
+	
+	/**
+	 * @param from a position returned by {@link #length()}
+	 * @return the text after that position which is still buffered, for error messages
+	 */
+	String tail(long from)
+	{
+		return _buffer.substring((int) Math.max(0, from - _offset));
+	}
+	
+	/**
+	 * Writes what is left, without the trailing whitespace. Only used with a writer.
+	 * @return the number of chars written
+	 * @throws IOException if the writer fails
+	 */
+	long finish() throws IOException
+	{
+		flush();
+		_buffer.setLength(0);
+		return _written;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return _buffer.toString();
+	}
+	
+	private TextSink checkFlush() throws IOException
+	{
+		if ((_writer != null) && (_buffer.length() >= FLUSH_SIZE))
+		{
+			flush();
+		}
+		return this;
+	}
+	
+	/**
+	 * Writes the buffer except leading whitespace of the text and whitespace that may still turn out to be trailing.
+	 */
+	private void flush() throws IOException
+	{
+		final int length = _buffer.length();
+		int start = 0;
+		if (_written == 0)
+		{
+			while ((start < length) && (_buffer.charAt(start) <= ' '))
+			{
+				++start;
+			}
+		}
+		
+		int end = length;
+		while ((end > start) && (_buffer.charAt(end - 1) <= ' '))
+		{
+			--end;
+		}
+		
+		final int consumed = ((end == start) && (_written == 0)) ? length : end;
+		if (end > start)
+		{
+			final int size = end - start;
+			if ((_chunk == null) || (_chunk.length < size))
+			{
+				_chunk = new char[size];
+			}
+			_buffer.getChars(start, end, _chunk, 0);
+			_writer.write(_chunk, 0, size);
+			_written += size;
+		}
+		
+		if (consumed > 0)
+		{
+			_lastChar = _buffer.charAt(consumed - 1);
+			_buffer.delete(0, consumed);
+			_offset += consumed;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.xml.exceptions;
+
+/**
+ * Thrown when a name is missing from the game data name table while appending new names is not allowed.
+ */
+public class UnknownNameException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+	
+	public UnknownNameException(String message)
+	{
+		super(message);
+	}
+}
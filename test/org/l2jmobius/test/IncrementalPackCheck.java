@@ -0,0 +1,200 @@
+/*
+ * This file is part of the L2ClientDat project.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.l2jmobius.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.l2jmobius.actions.ActionTask;
+import org.l2jmobius.actions.MassTxtPacker;
+import org.l2jmobius.actions.MassTxtUnpacker;
+import org.l2jmobius.clientcryptor.DatFile;
+import org.l2jmobius.clientcryptor.crypt.DatCrypter;
+import org.l2jmobius.config.ConfigDebug;
+import org.l2jmobius.config.ConfigWindow;
+import org.l2jmobius.listeners.TaskListener;
+import org.l2jmobius.xml.CryptVersionParser;
+import org.l2jmobius.xml.DatFixture;
+import org.l2jmobius.xml.DescriptorParser;
+
+/**
+ * Checks that an incremental mass pack writes the same files as a full pack of the same texts.<br>
+ * Two files of a generated chronicle get names that are not in L2GameDataName, so they are deferred. After a full pack, each of them is edited in turn and packed again over the previous output, which is then compared with a full pack of a copy of the texts.<br>
+ * Runs from the dist folder and exits with 1 if a packed file differs.
+ */
+public class IncrementalPackCheck
+{
+	private static final Logger LOGGER = Logger.getLogger(IncrementalPackCheck.class.getName());
+	
+	private static final String CHRONICLE = "Superion - Guardians";
+	private static final String ENCRYPTER = "v413_encdec";
+	private static final String[] FILES =
+	{
+		"Skillgrp.dat",
+		"ItemName-e.dat",
+		"NpcName-e.dat",
+		"Armorgrp.dat"
+	};
+	/** The files that get new names, packed after the others. */
+	private static final String[] DEFERRED =
+	{
+		"Skillgrp.txt",
+		"ItemName-e.txt"
+	};
+	private static final int RECORDS = 200;
+	
+	private static final TaskListener LISTENER = new TaskListener()
+	{
+	};
+	
+	public static void main(String[] args) throws Exception
+	{
+		ConfigWindow.load();
+		ConfigDebug.load();
+		CryptVersionParser.getInstance().parse();
+		DescriptorParser.getInstance().parse();
+		ConfigWindow.CURRENT_ENCRYPT = ENCRYPTER;
+		
+		final File dir = Files.createTempDirectory("l2clientdat-check").toFile();
+		boolean passed = false;
+		try
+		{
+			passed = check(dir);
+		}
+		finally
+		{
+			delete(dir.toPath());
+		}
+		
+		LOGGER.info(passed ? "Incremental pack check passed." : "Incremental pack check failed.");
+		System.exit(passed ? 0 : 1);
+	}
+	
+	private static boolean check(File dir) throws Exception
+	{
+		final DatCrypter encrypter = CryptVersionParser.getInstance().getEncryptKey(ENCRYPTER);
+		DatFixture.writeGameDataName(dir, encrypter);
+		for (String fileName : FILES)
+		{
+			final byte[] data = DatFixture.generate(DescriptorParser.getInstance().findDescriptorForFile(CHRONICLE, fileName), 7, RECORDS);
+			DatFile.encrypt(data, new File(dir, fileName).getPath(), encrypter);
+		}
+		
+		if (!run(new MassTxtUnpacker(LISTENER, CHRONICLE, dir.getPath())))
+		{
+			LOGGER.severe("Cannot unpack the fixtures.");
+			return false;
+		}
+		
+		final File textDir = new File(dir, "unpacked");
+		for (String fileName : DEFERRED)
+		{
+			addName(new File(textDir, fileName), "check_first");
+		}
+		
+		if (!run(new MassTxtPacker(LISTENER, CHRONICLE, textDir.getPath())))
+		{
+			LOGGER.severe("Cannot pack the fixtures.");
+			return false;
+		}
+		
+		if (!new File(textDir, "packed/pack.names").isFile())
+		{
+			LOGGER.severe("No file was deferred, the check does not cover the names.");
+			return false;
+		}
+		
+		// Each deferred file is edited once, so both the replay of the unchanged one and the repack of the edited one are compared.
+		for (int i = 0; i < DEFERRED.length; ++i)
+		{
+			addName(new File(textDir, DEFERRED[i]), "check_edit" + i);
+			if (!run(new MassTxtPacker(LISTENER, CHRONICLE, textDir.getPath())))
+			{
+				LOGGER.severe("Cannot pack after editing " + DEFERRED[i] + ".");
+				return false;
+			}
+			
+			final File fullDir = new File(dir, "full" + i);
+			fullDir.mkdir();
+			for (File file : textDir.listFiles(File::isFile))
+			{
+				Files.copy(file.toPath(), new File(fullDir, file.getName()).toPath());
+			}
+			
+			if (!run(new MassTxtPacker(LISTENER, CHRONICLE, fullDir.getPath())) || !compare(new File(fullDir, "packed"), new File(textDir, "packed"), DEFERRED[i]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return {@code true} if the task completed without failed files
+	 */
+	private static boolean run(ActionTask task)
+	{
+		task.run();
+		return !task.isCancelled() && (task.getFailedCount() == 0);
+	}
+	
+	/**
+	 * Makes the first L2GameDataName value of a text refer to a name that is not in the table yet.
+	 */
+	private static void addName(File file, String prefix) throws IOException
+	{
+		final String text = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+		Files.writeString(file.toPath(), text.replaceFirst("\\[name_", "[" + prefix + "_name_"), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * @return {@code true} if every packed file of the full pack is the same in the incremental pack
+	 */
+	private static boolean compare(File full, File incremental, String edited) throws IOException
+	{
+		boolean same = true;
+		for (File file : full.listFiles(f -> f.getName().endsWith(".dat")))
+		{
+			final File other = new File(incremental, file.getName());
+			if (!other.isFile() || (Files.mismatch(file.toPath(), other.toPath()) >= 0))
+			{
+				LOGGER.severe(file.getName() + " differs from a full pack after editing " + edited + ".");
+				same = false;
+			}
+		}
+		return same;
+	}
+	
+	private static void delete(Path path)
+	{
+		try (Stream<Path> paths = Files.walk(path))
+		{
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+		catch (IOException e)
+		{
+			LOGGER.log(Level.WARNING, "Cannot delete " + path, e);
+		}
+	}
+}